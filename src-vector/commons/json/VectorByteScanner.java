@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 以Vector API一次比较{@link ByteVector#SPECIES_PREFERRED}长度（通常为32或64）的字节，不足一个向量的尾部逐字节处理
+ * <p>
+ * 位于单独的源码目录src-vector，在src编译后以--add-modules jdk.incubator.vector另行编译，运行时同样需要该参数。
+ * 只通过{@link ByteScanner#getInstance()}反射加载，类或模块不存在时使用标量实现。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class VectorByteScanner extends ByteScanner {
+
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+	private static final int LENGTH = SPECIES.length();
+
+	@Override
+	int skipWhiteSpace(byte[] buf, int pos, int limit) {
+		// 值之间多为单个空白或没有空白，连续两个空白时才按向量处理
+		if (limit - pos < LENGTH || !isSpace(buf[pos]) || !isSpace(buf[pos + 1])) {
+			return super.skipWhiteSpace(buf, pos, limit);
+		}
+		for (int bound = limit - LENGTH; pos <= bound; pos += LENGTH) {
+			ByteVector v = ByteVector.fromArray(SPECIES, buf, pos);
+			// 空白为' '、\t至\r、\u001c至\u001f
+			VectorMask<Byte> whitespace = v.eq((byte) ' ')
+					.or(v.compare(VectorOperators.GE, (byte) '\t').and(
+							v.compare(VectorOperators.LE, (byte) '\r')))
+					.or(v.compare(VectorOperators.GE, (byte) 0x1c).and(
+							v.compare(VectorOperators.LE, (byte) 0x1f)));
+			if (!whitespace.allTrue()) {
+				return pos + whitespace.not().firstTrue();
+			}
+		}
+		return super.skipWhiteSpace(buf, pos, limit);
+	}
+
+	@Override
+	int scanAscii(byte[] buf, int pos, int limit, byte quote) {
+		for (int bound = limit - LENGTH; pos <= bound; pos += LENGTH) {
+			ByteVector v = ByteVector.fromArray(SPECIES, buf, pos);
+			VectorMask<Byte> found = v.eq(quote).or(v.eq((byte) '\\'))
+					.or(v.compare(VectorOperators.LT, (byte) 0));
+			if (found.anyTrue()) {
+				return pos + found.firstTrue();
+			}
+		}
+		return super.scanAscii(buf, pos, limit, quote);
+	}
+
+	@Override
+	int scanString(byte[] buf, int pos, int limit, byte quote) {
+		for (int bound = limit - LENGTH; pos <= bound; pos += LENGTH) {
+			ByteVector v = ByteVector.fromArray(SPECIES, buf, pos);
+			VectorMask<Byte> found = v.eq(quote).or(v.eq((byte) '\\'));
+			if (found.anyTrue()) {
+				return pos + found.firstTrue();
+			}
+		}
+		return super.scanString(buf, pos, limit, quote);
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 序列化输出缓冲区的回收器，在多次序列化之间复用字符和字节缓冲区
+ * <p>
+ * 平台线程各自持有一个回收器；虚拟线程数量可能极多，改从有界的无锁池中借用，池空时新建，池满时丢弃。
+ * 借出期间回收器不在线程或池中，嵌套的序列化会得到另一个实例。超过{@link #MAX_RETAINED}的缓冲区不会被保留。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class BufferRecycler {
+
+	/**
+	 * 字节缓冲区大小
+	 */
+	static final int BYTE_BUFFER_SIZE = 8192;
+
+	/**
+	 * 保留的字符缓冲区的最大容量
+	 */
+	static final int MAX_RETAINED = 1 << 18;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final ThreadLocal<BufferRecycler> LOCAL = new ThreadLocal<BufferRecycler>();
+
+	private static final AtomicReferenceArray<BufferRecycler> POOL = new AtomicReferenceArray<BufferRecycler>(
+			Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 4);
+
+	/**
+	 * Thread.isVirtual()，JDK 21之前不存在时为null
+	 */
+	private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+	private StringBuilder chars = new StringBuilder(INITIAL_CAPACITY);
+
+	private final byte[] bytes = new byte[BYTE_BUFFER_SIZE];
+
+	private BufferRecycler() {
+	}
+
+	/**
+	 * 借出回收器，用完后必须调用{@link #release()}
+	 *
+	 * @return
+	 */
+	static BufferRecycler acquire() {
+		BufferRecycler recycler;
+		if (isVirtual(Thread.currentThread())) {
+			recycler = poll();
+		} else {
+			recycler = LOCAL.get();
+			if (recycler != null) {
+				LOCAL.set(null);
+			}
+		}
+		return recycler != null ? recycler : new BufferRecycler();
+	}
+
+	/**
+	 * 归还回收器
+	 */
+	void release() {
+		if (chars.capacity() > MAX_RETAINED) {
+			chars = new StringBuilder(INITIAL_CAPACITY);
+		}
+		if (isVirtual(Thread.currentThread())) {
+			offer(this);
+		} else {
+			LOCAL.set(this);
+		}
+	}
+
+	/**
+	 * 清空后的字符缓冲区
+	 *
+	 * @return
+	 */
+	StringBuilder charBuffer() {
+		chars.setLength(0);
+		return chars;
+	}
+
+	/**
+	 * 长度为{@link #BYTE_BUFFER_SIZE}的字节缓冲区
+	 *
+	 * @return
+	 */
+	byte[] byteBuffer() {
+		return bytes;
+	}
+
+	private static BufferRecycler poll() {
+		int mask = POOL.length() - 1;
+		int start = (int) Thread.currentThread().getId();
+		for (int i = 0; i <= mask; i++) {
+			int index = (start + i) & mask;
+			if (POOL.get(index) != null) {
+				BufferRecycler recycler = POOL.getAndSet(index, null);
+				if (recycler != null) {
+					return recycler;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void offer(BufferRecycler recycler) {
+		int mask = POOL.length() - 1;
+		int start = (int) Thread.currentThread().getId();
+		for (int i = 0; i <= mask; i++) {
+			int index = (start + i) & mask;
+			if (POOL.get(index) == null
+					&& POOL.compareAndSet(index, null, recycler)) {
+				return;
+			}
+		}
+	}
+
+	private static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+		try {
+			return (boolean) IS_VIRTUAL.invokeExact(thread);
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	private static MethodHandle isVirtualHandle() {
+		try {
+			return MethodHandles.publicLookup().findVirtual(Thread.class,
+					"isVirtual", MethodType.methodType(boolean.class));
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+}
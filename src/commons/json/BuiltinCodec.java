@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.IOException;
+
+/**
+ * 内置编解码器，对应各个{@link JsonAware}类型
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+enum BuiltinCodec implements JsonCodec<Object> {
+	/**
+	 * 映射为JsonNull
+	 */
+	NULL {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			writer.writeNull();
+		}
+	},
+	/**
+	 * 映射为JsonBoolean
+	 */
+	BOOLEAN {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			writer.writeBoolean(toBoolean(value));
+		}
+	},
+	/**
+	 * 映射为JsonString
+	 */
+	STRING {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			serializer.writeString(value);
+		}
+	},
+	/**
+	 * 映射为JsonNumber
+	 */
+	NUMBER {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			writer.writeNumber(toNumber(value));
+		}
+	},
+	/**
+	 * 映射为JsonArray
+	 */
+	ARRAY {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			serializer.writeArray(value);
+		}
+	},
+	/**
+	 * Map映射为JsonObject
+	 */
+	MAP {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			serializer.writeMap(value);
+		}
+	},
+	/**
+	 * 普通Java对象映射为JsonObject
+	 */
+	BEAN {
+		public void write(Object value, JsonWriter writer,
+				JsonSerializer serializer) throws IOException {
+			serializer.writeBean(value);
+		}
+	};
+
+	/**
+	 * 注册为JsonBoolean的非Boolean类型按其字符串形式解析
+	 * 
+	 * @param value
+	 * @return
+	 */
+	static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return ((Boolean) value).booleanValue();
+		}
+		return Boolean.parseBoolean(value.toString());
+	}
+
+	/**
+	 * 注册为JsonNumber的类型必须是Number
+	 * 
+	 * @param value
+	 * @return
+	 */
+	static Number toNumber(Object value) {
+		if (!(value instanceof Number)) {
+			throw new JsonException("非法参数:" + value);
+		}
+		return (Number) value;
+	}
+
+	/**
+	 * 按{@link JsonAware}类型查找内置编解码器
+	 * 
+	 * @param src
+	 * @param target
+	 * @return
+	 */
+	static BuiltinCodec forTarget(Class<?> src,
+			Class<? extends JsonAware> target) {
+		if (target == JsonString.class) {
+			return STRING;
+		} else if (target == JsonNumber.class) {
+			return NUMBER;
+		} else if (target == JsonArray.class) {
+			return ARRAY;
+		} else if (target == JsonObject.class) {
+			return java.util.Map.class.isAssignableFrom(src) ? MAP : BEAN;
+		} else if (target == JsonBoolean.class) {
+			return BOOLEAN;
+		} else if (target == JsonNull.class) {
+			return NULL;
+		}
+		throw new JsonException("非法参数:" + target);
+	}
+}
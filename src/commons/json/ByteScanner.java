@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import static commons.json.JsonLexer.CHAR_TYPES;
+import static commons.json.JsonLexer.WHITESPACE;
+
+/**
+ * 在UTF-8字节中查找空白和字符串结束位置，供{@link JsonByteDeserializer}使用
+ * <p>
+ * 默认逐字节查找；以--add-modules jdk.incubator.vector启动时使用{@link VectorByteScanner}一次比较多个字节，
+ * 可通过系统属性commons.json.vector=false禁用。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+class ByteScanner {
+
+	private static final ByteScanner INSTANCE = create();
+
+	private static ByteScanner create() {
+		if (Boolean.parseBoolean(System.getProperty("commons.json.vector", "true"))
+				&& ModuleLayer.boot().findModule("jdk.incubator.vector")
+						.isPresent()) {
+			try {
+				return (ByteScanner) Class.forName(
+						"commons.json.VectorByteScanner").getDeclaredConstructor()
+						.newInstance();
+			} catch (ReflectiveOperationException e) {
+				// 退回逐字节查找
+			} catch (LinkageError e) {
+				// 同上
+			}
+		}
+		return new ByteScanner();
+	}
+
+	/**
+	 * 当前使用的实现
+	 *
+	 * @return
+	 */
+	static ByteScanner getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * 跳过ASCII空白
+	 *
+	 * @param buf
+	 * @param pos
+	 * @param limit
+	 * @return 第一个非ASCII空白字节的位置，没有时返回limit
+	 */
+	int skipWhiteSpace(byte[] buf, int pos, int limit) {
+		while (pos < limit) {
+			byte b = buf[pos];
+			if (b < 0 || (CHAR_TYPES[b] & WHITESPACE) == 0) {
+				return pos;
+			}
+			pos++;
+		}
+		return limit;
+	}
+
+	/**
+	 * 查找字符串中的引号、反斜杠或非ASCII字节
+	 *
+	 * @param buf
+	 * @param pos
+	 * @param limit
+	 * @param quote
+	 * @return 找到的位置，没有时返回limit
+	 */
+	int scanAscii(byte[] buf, int pos, int limit, byte quote) {
+		while (pos < limit) {
+			byte b = buf[pos];
+			if (b < 0 || b == quote || b == '\\') {
+				return pos;
+			}
+			pos++;
+		}
+		return limit;
+	}
+
+	/**
+	 * 查找字符串中的引号或反斜杠，UTF-8多字节字符的每个字节都不小于0x80，不会与其混淆
+	 *
+	 * @param buf
+	 * @param pos
+	 * @param limit
+	 * @param quote
+	 * @return 找到的位置，没有时返回limit
+	 */
+	int scanString(byte[] buf, int pos, int limit, byte quote) {
+		while (pos < limit) {
+			byte b = buf[pos];
+			if (b == quote || b == '\\') {
+				return pos;
+			}
+			pos++;
+		}
+		return limit;
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * 编解码器注册表
+ * <p>
+ * 每个运行时类型只解析一次，解析结果缓存在{@link ClassValue}中， 之后每个值的类型分派只需一次查找。
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class CodecRegistry {
+
+	/**
+	 * 全局默认注册表
+	 */
+	private static final CodecRegistry DEFAULT = new CodecRegistry(null);
+
+	/**
+	 * 编译期生成的编解码器，只对类型本身生效，不作用于子类型
+	 */
+	private static final Map<Class<?>, GeneratedCodec<?>> GENERATED = loadGenerated();
+
+	/**
+	 * 映射为JsonString的Java类型
+	 */
+	private static final Class<?>[] STRING_TYPES = { String.class,
+			Character.class, Enum.class, java.util.Date.class };
+
+	/**
+	 * 上级注册表，本表中找不到用户编解码器时继续查找
+	 */
+	private final CodecRegistry parent;
+
+	/**
+	 * 用户注册的编解码器，按注册顺序保存
+	 */
+	private final List<Registration> registrations = new ArrayList<Registration>();
+
+	/**
+	 * 类型到编解码器的缓存，注册新编解码器后整体替换
+	 */
+	private volatile ClassValue<JsonCodec<?>> codecs = newCache();
+
+	CodecRegistry(CodecRegistry parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * 获取全局默认注册表
+	 * 
+	 * @return
+	 */
+	static CodecRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 注册编解码器，对type及其子类型生效，后注册的优先
+	 * 
+	 * @param type
+	 * @param codec
+	 */
+	<T> void register(Class<T> type, JsonCodec<? super T> codec) {
+		if (type == null || codec == null) {
+			throw new IllegalArgumentException("类型和编解码器不能为空");
+		}
+		synchronized (registrations) {
+			registrations.add(new Registration(type, codec));
+			codecs = newCache();
+		}
+	}
+
+	/**
+	 * 查找类型对应的编解码器
+	 * 
+	 * @param type
+	 * @return
+	 */
+	JsonCodec<Object> lookup(Class<?> type) {
+		return (JsonCodec<Object>) codecs.get(type);
+	}
+
+	/**
+	 * 查找类型本身的编译期生成的编解码器
+	 * 
+	 * @param type
+	 * @return 没有时返回null
+	 */
+	static GeneratedCodec<?> generated(Class<?> type) {
+		return GENERATED.get(type);
+	}
+
+	private ClassValue<JsonCodec<?>> newCache() {
+		return new ClassValue<JsonCodec<?>>() {
+			@Override
+			protected JsonCodec<?> computeValue(Class<?> type) {
+				JsonCodec<?> codec = findRegistered(type);
+				if (codec == null) {
+					codec = GENERATED.get(type);
+				}
+				return codec != null ? codec : builtin(type);
+			}
+		};
+	}
+
+	/**
+	 * 通过ServiceLoader加载编译期生成的编解码器，无法加载的条目将被忽略
+	 * 
+	 * @return
+	 */
+	private static Map<Class<?>, GeneratedCodec<?>> loadGenerated() {
+		Map<Class<?>, GeneratedCodec<?>> generated = new HashMap<Class<?>, GeneratedCodec<?>>();
+		Iterator<GeneratedCodec> it = ServiceLoader.load(GeneratedCodec.class)
+				.iterator();
+		while (true) {
+			try {
+				if (!it.hasNext()) {
+					break;
+				}
+				GeneratedCodec<?> codec = it.next();
+				generated.put(codec.getType(), codec);
+			} catch (ServiceConfigurationError e) {
+				// 忽略
+			}
+		}
+		return generated;
+	}
+
+	/**
+	 * 查找用户注册的编解码器，精确匹配优先
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private JsonCodec<?> findRegistered(Class<?> type) {
+		synchronized (registrations) {
+			for (int i = registrations.size() - 1; i >= 0; i--) {
+				Registration registration = registrations.get(i);
+				if (registration.type == type) {
+					return registration.codec;
+				}
+			}
+			for (int i = registrations.size() - 1; i >= 0; i--) {
+				Registration registration = registrations.get(i);
+				if (registration.type.isAssignableFrom(type)) {
+					return registration.codec;
+				}
+			}
+		}
+		return parent == null ? null : parent.findRegistered(type);
+	}
+
+	/**
+	 * 内置类型映射，顺序与{@link JsonSerializer#typeMapping(Object)}一致
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static JsonCodec<?> builtin(Class<?> type) {
+		if (type == Boolean.class) {
+			return BuiltinCodec.BOOLEAN;
+		}
+		if (isAssignable(STRING_TYPES, type)) {
+			return BuiltinCodec.STRING;
+		}
+		// 包括解析超出long和double范围的数值得到的BigInteger和BigDecimal
+		if (Number.class.isAssignableFrom(type)) {
+			return BuiltinCodec.NUMBER;
+		}
+		if (type.isArray() || Iterable.class.isAssignableFrom(type)) {
+			return BuiltinCodec.ARRAY;
+		}
+		if (Map.class.isAssignableFrom(type)) {
+			return BuiltinCodec.MAP;
+		}
+		return BuiltinCodec.BEAN;
+	}
+
+	private static boolean isAssignable(Class<?>[] types, Class<?> type) {
+		for (Class<?> candidate : types) {
+			if (candidate.isAssignableFrom(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 注册项
+	 */
+	private static final class Registration {
+		final Class<?> type;
+		final JsonCodec<?> codec;
+
+		Registration(Class<?> type, JsonCodec<?> codec) {
+			this.type = type;
+			this.codec = codec;
+		}
+	}
+}
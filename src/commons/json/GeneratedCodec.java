@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+/**
+ * 编译期生成的编解码器接口
+ * <p>
+ * 实现类由{@link commons.json.processor.JsonCodecProcessor}生成，并登记在
+ * <code>META-INF/services/commons.json.GeneratedCodec</code>中。
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ * 
+ * @param <T>
+ */
+public interface GeneratedCodec<T> extends JsonCodec<T> {
+	/**
+	 * 编解码的类型
+	 * 
+	 * @return
+	 */
+	Class<T> getType();
+
+	/**
+	 * 读取一个值，{@link Json#deserialize(String, Class)}等类型绑定的反序列化使用
+	 * 
+	 * @param reader
+	 *            位于值之前
+	 * @return Json为null时返回null
+	 * @throws JsonException
+	 */
+	T read(JsonReader reader);
+}
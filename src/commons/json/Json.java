@@ -18,9 +18,17 @@ package commons.json;
 import commons.json.cache.Cache;
 import commons.json.cache.CacheProvider;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 
 /**
@@ -49,12 +57,31 @@ public class Json {
 	}
 	
 	/**
-	 * 是否已经缓存
+	 * 注册编解码器，对type及其子类型生效
+	 * 
+	 * @param type
+	 * @param codec
+	 */
+	public static <T> void registerCodec(Class<T> type, JsonCodec<? super T> codec) {
+		CodecRegistry.getDefault().register(type, codec);
+	}
+	
+	/**
+	 * 是否为普通Java对象生成专用序列化类，默认为false
+	 * 
+	 * @param enable
+	 */
+	public static void setCodeGenerationEnabled(boolean enable) {
+		SerializerGenerator.setEnabled(enable);
+	}
+	
+	/**
+	 * 读取缓存，未开启或未缓存时返回null。先contains再get时，其间元素可能已被其他线程淘汰
 	 * @param object
 	 * @return
 	 */
-	private static boolean hasCached(Object object) {			
-		return cache.contains(object);
+	private static Object getCached(Object object) {
+		return cacheEnable ? cache.get(object) : null;
 	}
 
 	/**
@@ -64,13 +91,20 @@ public class Json {
 	 * @return 序列化字符串
 	 */
 	public static String serialize(Object object) {
-		if(cacheEnable&&hasCached(object)) 
-			return (String) cache.get(object);
+		String cached = (String) getCached(object);
+		if (cached != null)
+			return cached;
 		
-		StringBuffer sb = new StringBuffer();
-		JsonSerializer json = new JsonSerializer(sb, false);
-		json.serialize(object);
-		String str=sb.toString();
+		String str;
+		BufferRecycler recycler = BufferRecycler.acquire();
+		try {
+			StringBuilder sb = recycler.charBuffer();
+			JsonSerializer json = new JsonSerializer(sb, false);
+			json.serialize(object);
+			str = sb.toString();
+		} finally {
+			recycler.release();
+		}
 		
 		if(cacheEnable) 
 			cache.add(object,str);
@@ -91,6 +125,83 @@ public class Json {
 			JsonSerializer json = new JsonSerializer(writer, false);
 			json.serialize(object);
 	}
+
+	/**
+	 * 以UTF-8编码序列化到字节流，不生成中间字符串；完成后flush但不关闭out
+	 * 
+	 * @param out
+	 * @param object
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static void serialize(OutputStream out, Object object) {
+		BufferRecycler recycler = BufferRecycler.acquire();
+		try {
+			serialize(new Utf8Writer(out, recycler.byteBuffer()), object);
+		} finally {
+			recycler.release();
+		}
+	}
+
+	/**
+	 * 以UTF-8编码序列化到ByteBuffer的当前位置
+	 * 
+	 * @param buffer
+	 * @param object
+	 * @throws java.nio.BufferOverflowException
+	 *             when buffer has not enough space
+	 */
+	public static void serialize(ByteBuffer buffer, Object object) {
+		BufferRecycler recycler = BufferRecycler.acquire();
+		try {
+			serialize(new Utf8Writer(buffer, recycler.byteBuffer()), object);
+		} finally {
+			recycler.release();
+		}
+	}
+
+	/**
+	 * 以UTF-8编码序列化到阻塞模式的通道，完成后不关闭channel
+	 * 
+	 * @param channel
+	 * @param object
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static void serialize(WritableByteChannel channel, Object object) {
+		serialize(Channels.newOutputStream(channel), object);
+	}
+
+	/**
+	 * 序列化到PrintStream，与{@link #serialize(Appendable, Object)}相同，按其自身的字符集输出
+	 * 
+	 * @param out
+	 * @param object
+	 */
+	public static void serialize(PrintStream out, Object object) {
+		serialize((Appendable) out, object);
+	}
+
+	private static void serialize(Utf8Writer writer, Object object) {
+		JsonSerializer json = new JsonSerializer(writer, false);
+		json.serialize(object);
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+	}
+	
+	/**
+	 * 转换为{@link JsonAware}树
+	 * 
+	 * @param object
+	 * @return Json元素树
+	 */
+	public static JsonAware toJsonTree(Object object) {
+		JsonSerializer json = new JsonSerializer(null, false);
+		return json.toJsonTree(object);
+	}
 	
 	
 	
@@ -103,8 +214,9 @@ public class Json {
 	 * @throws JsonException
 	 */
 	public static Object deserialize(String json) throws JsonException {
-		if(cacheEnable&&hasCached(json)) 
-			return  cache.get(json);
+		Object cached = getCached(json);
+		if (cached != null)
+			return cached;
 		
 		JsonDeserializer reader = new JsonDeserializer();
 		Object obj=reader.deserialize(json);
@@ -117,6 +229,90 @@ public class Json {
 		
 	}
 
+	/**
+	 * 反序列化为指定类型，解析过程中直接填充对象、record和集合，不构建中间的Map
+	 * 
+	 * @param json
+	 * @param type
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(String json, Class<T> type) throws JsonException {
+		return (T) TypeBinder.of(type).read(new JsonReader(json));
+	}
+
+	/**
+	 * 反序列化为带泛型参数的类型
+	 * 
+	 * <pre>
+	 * List&lt;Person&gt; persons = Json.deserialize(json, new TypeToken&lt;List&lt;Person&gt;&gt;() {});
+	 * </pre>
+	 * 
+	 * @param json
+	 * @param type
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(String json, TypeToken<T> type) throws JsonException {
+		return (T) TypeBinder.of(type.getType()).read(new JsonReader(json));
+	}
+
+	/**
+	 * 从Reader反序列化为指定类型
+	 * 
+	 * @param reader
+	 * @param type
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(Reader reader, Class<T> type) throws JsonException {
+		return (T) TypeBinder.of(type).read(new JsonReader(reader));
+	}
+
+	/**
+	 * 从Reader反序列化为带泛型参数的类型
+	 * 
+	 * @param reader
+	 * @param type
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(Reader reader, TypeToken<T> type) throws JsonException {
+		return (T) TypeBinder.of(type.getType()).read(new JsonReader(reader));
+	}
+
+	/**
+	 * 从JsonReader读取下一个值并反序列化为指定类型，读取后reader位于该值之后
+	 * 
+	 * @param reader
+	 * @param type
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(JsonReader reader, Class<T> type) throws JsonException {
+		return (T) TypeBinder.of(type).read(reader);
+	}
+
+	/**
+	 * 从JsonReader读取下一个值并反序列化为带泛型参数的类型
+	 * 
+	 * @param reader
+	 * @param type
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T deserialize(JsonReader reader, TypeToken<T> type) throws JsonException {
+		return (T) TypeBinder.of(type.getType()).read(reader);
+	}
+
 	/**
 	 * 反序列化
 	 * 
@@ -126,20 +322,188 @@ public class Json {
 	 *             when IOException happens
 	 */
 	public static Object deserialize(Reader reader) throws JsonException {
-		// read content
-		BufferedReader bufferReader = new BufferedReader(reader);
-		String line = null;
-		StringBuilder buffer = new StringBuilder();
+		JsonDeserializer deserializer = new JsonDeserializer();
+		return deserializer.deserialize(reader);
+	}
 
-		try {
-			while ((line = bufferReader.readLine()) != null) {
-				buffer.append(line);
-			}
+	/**
+	 * 反序列化UTF-8字节，以BOM识别UTF-16和UTF-32
+	 * 
+	 * @param bytes
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	public static Object deserialize(byte[] bytes) throws JsonException {
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+		return deserializer.deserialize(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * 反序列化ByteBuffer中剩余的UTF-8字节，不改变其position
+	 * 
+	 * @param buffer
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	public static Object deserialize(ByteBuffer buffer) throws JsonException {
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+		return deserializer.deserialize(buffer);
+	}
+
+	/**
+	 * 从UTF-8字节流反序列化
+	 * 
+	 * @param in
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static Object deserialize(InputStream in) throws JsonException {
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+		return deserializer.deserialize(in);
+	}
+
+	/**
+	 * 映射并反序列化UTF-8文件，适用于大文件
+	 * 
+	 * @param path
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static Object deserialize(Path path) throws JsonException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			JsonByteDeserializer deserializer = new JsonByteDeserializer();
+			return deserializer.deserialize(channel);
 		} catch (IOException e) {
 			throw new JsonException(e);
 		}
+	}
 
-		return deserialize(buffer.toString());
+	/**
+	 * 延迟解析为{@link JsonObject}、{@link JsonArray}等树结构。
+	 * 对象和数组只记录在输入中的位置，首次访问时才解析直接成员；从未访问的子树只被快速跳过，
+	 * 其中的格式错误也不会被发现。返回的树不是线程安全的。
+	 * 
+	 * @param json
+	 * @return
+	 * @throws JsonException
+	 */
+	public static JsonAware deserializeLazy(String json) throws JsonException {
+		JsonDeserializer deserializer = new JsonDeserializer();
+		return deserializer.deserializeLazy(json);
+	}
+
+	/**
+	 * 解析为结构化磁带，适用于需要反复查询的文档
+	 * 
+	 * @param json
+	 * @return
+	 * @throws JsonException
+	 */
+	public static JsonTape deserializeTape(String json) throws JsonException {
+		return new JsonTape(json);
+	}
+
+	/**
+	 * 反序列化，顶层为大数组时在多个线程上并行解析各元素
+	 * 
+	 * @param json
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	public static Object deserializeParallel(String json) throws JsonException {
+		return ParallelArrayDeserializer.deserialize(json);
+	}
+
+	/**
+	 * 反序列化UTF-8字节，顶层为大数组时在多个线程上并行解析各元素
+	 * 
+	 * @param bytes
+	 * @return 反序列化后对象
+	 * @throws JsonException
+	 */
+	public static Object deserializeParallel(byte[] bytes) throws JsonException {
+		return ParallelArrayDeserializer.deserialize(bytes);
+	}
+
+	/**
+	 * 事件驱动解析，不构建对象模型
+	 * 
+	 * @param json
+	 * @param handler
+	 * @throws JsonException
+	 */
+	public static void parse(String json, JsonHandler handler) throws JsonException {
+		JsonDeserializer deserializer = new JsonDeserializer();
+		deserializer.deserialize(json, handler);
+	}
+
+	/**
+	 * 事件驱动解析，不构建对象模型
+	 * 
+	 * @param reader
+	 * @param handler
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static void parse(Reader reader, JsonHandler handler) throws JsonException {
+		JsonDeserializer deserializer = new JsonDeserializer();
+		deserializer.deserialize(reader, handler);
+	}
+
+	/**
+	 * 事件驱动解析UTF-8字节，不构建对象模型
+	 * 
+	 * @param bytes
+	 * @param handler
+	 * @throws JsonException
+	 */
+	public static void parse(byte[] bytes, JsonHandler handler) throws JsonException {
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+		deserializer.deserialize(bytes, 0, bytes.length, handler);
+	}
+
+	/**
+	 * 事件驱动解析ByteBuffer中剩余的UTF-8字节，不改变其position
+	 * 
+	 * @param buffer
+	 * @param handler
+	 * @throws JsonException
+	 */
+	public static void parse(ByteBuffer buffer, JsonHandler handler) throws JsonException {
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+		deserializer.deserialize(buffer, handler);
+	}
+
+	/**
+	 * 从UTF-8字节流事件驱动解析，不构建对象模型
+	 * 
+	 * @param in
+	 * @param handler
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static void parse(InputStream in, JsonHandler handler) throws JsonException {
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+		deserializer.deserialize(in, handler);
+	}
+
+	/**
+	 * 映射并事件驱动解析UTF-8文件，适用于大文件
+	 * 
+	 * @param path
+	 * @param handler
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public static void parse(Path path, JsonHandler handler) throws JsonException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			JsonByteDeserializer deserializer = new JsonByteDeserializer();
+			deserializer.deserialize(channel, handler);
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
 	}
 
 }
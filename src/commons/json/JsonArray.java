@@ -23,6 +23,9 @@ import java.util.List;
 
 /**
  * Json Array 封装类
+ * <p>
+ * 由{@link Json#deserializeLazy(String)}得到的数组只记录在原始输入中的位置，
+ * 首次访问时才解析直接元素，嵌套的对象和数组仍保持延迟。
  * 
  * @author yuanyan.cao@gmail.com
  * @version 1.0
@@ -30,6 +33,16 @@ import java.util.List;
 public final class JsonArray implements JsonAware, Iterable<JsonAware> {
 	private final List<JsonAware> elements;
 
+	/**
+	 * 延迟解析的原始输入，已解析或非延迟的数组为null
+	 */
+	private char[] source;
+
+	/**
+	 * 数组在原始输入中的位置，'['之后
+	 */
+	private int offset;
+
 	/**
 	 * 实例化Json数组元素对象
 	 */
@@ -37,6 +50,42 @@ public final class JsonArray implements JsonAware, Iterable<JsonAware> {
 		elements = new ArrayList<JsonAware>();
 	}
 
+	/**
+	 * 实例化延迟解析的数组
+	 * 
+	 * @param source
+	 * @param offset
+	 */
+	JsonArray(char[] source, int offset) {
+		this();
+		this.source = source;
+		this.offset = offset;
+	}
+
+	/**
+	 * 延迟的数组在首次访问时解析直接元素
+	 */
+	private void materialize() {
+		if (source != null) {
+			try {
+				new JsonDeserializer().lazyArray(source, offset, this);
+			} catch (RuntimeException e) {
+				elements.clear();
+				throw e;
+			}
+			source = null;
+		}
+	}
+
+	/**
+	 * 解析时添加元素
+	 * 
+	 * @param element
+	 */
+	void append(JsonAware element) {
+		elements.add(element);
+	}
+
 	/**
 	 * 添加Json元素
 	 * 
@@ -44,6 +93,7 @@ public final class JsonArray implements JsonAware, Iterable<JsonAware> {
 	 *         
 	 */
 	public void add(JsonAware element) {
+		materialize();
 		if (element == null) {
 			element = JsonNull.getInstance();
 		}
@@ -52,30 +102,41 @@ public final class JsonArray implements JsonAware, Iterable<JsonAware> {
 
 
 	public void addAll(JsonArray array) {
+		materialize();
+		array.materialize();
 		elements.addAll(array.elements);
 	}
 
 
 	void reverse() {
+		materialize();
 		Collections.reverse(elements);
 	}
 
 
 	public int size() {
+		materialize();
 		return elements.size();
 	}
 
 
 	public Iterator<JsonAware> iterator() {
+		materialize();
 		return elements.iterator();
 	}
 
 
 	public JsonAware get(int i) {
+		materialize();
 		return elements.get(i);
 	}
 
 	public void toString(Appendable sb) throws IOException{
+		toString(sb, new char[NumberFormatter.MAX_LENGTH]);
+	}
+
+	void toString(Appendable sb, char[] numberBuffer) throws IOException {
+		materialize();
 		sb.append('[');
 		boolean first = true;
 		for (JsonAware element : elements) {
@@ -84,7 +145,7 @@ public final class JsonArray implements JsonAware, Iterable<JsonAware> {
 			} else {
 				sb.append(',');
 			}
-			element.toString(sb);
+			JsonNumber.toString(element, sb, numberBuffer);
 		}
 		sb.append(']');
 	}
@@ -0,0 +1,861 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * 直接解析UTF-8字节的反序列化对象
+ * <p>
+ * 结构字符、数字和字面量都是ASCII，按字节处理即可，只有字符串内容需要解码，
+ * 省去了先把整个输入解码为UTF-16的开销，对象和数组的语法由{@link JsonLexer}实现。开头的BOM按RFC 4627的规则识别编码，
+ * 非UTF-8的输入解码后交给{@link JsonDeserializer}处理。
+ * <p>
+ * 解析文件时按窗口依次映射，映射区内容分块复制到固定大小的缓冲区，
+ * 不受单个映射2G的限制，堆上只保留解析出的值。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+class JsonByteDeserializer extends JsonLexer {
+
+	/**
+	 * 从流读取时的缓冲区大小
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * 解析文件时每次映射的最大字节数
+	 */
+	static final int MAP_WINDOW = 1 << 30;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+	private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+	private static final Charset UTF_32BE = Charset.forName("UTF-32BE");
+	private static final Charset UTF_32LE = Charset.forName("UTF-32LE");
+
+	/**
+	 * 非法UTF-8序列的替换字符
+	 */
+	private static final char REPLACEMENT = '\uFFFD';
+
+	/**
+	 * 空白和字符串结束位置的查找
+	 */
+	private static final ByteScanner SCANNER = ByteScanner.getInstance();
+
+	private byte[] buf;
+	/**
+	 * 输入流，解析字节数组时为null
+	 */
+	private InputStream in;
+	/**
+	 * 不能直接访问底层数组的ByteBuffer，解析字节数组时为null
+	 */
+	private ByteBuffer source;
+	/**
+	 * 按窗口映射的文件，不是解析文件时为null
+	 */
+	private FileChannel channel;
+	/**
+	 * 文件中已映射部分的结束位置
+	 */
+	private long mapped;
+	/**
+	 * 每次映射的字节数
+	 */
+	int mapWindow = MAP_WINDOW;
+	private StringBuilder sb = new StringBuilder();
+
+	/**
+	 * 反序列化字节数组
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws JsonException
+	 */
+	public Object deserialize(byte[] bytes, int offset, int length) {
+		this.reset(bytes, offset, length);
+
+		return this.deserialize();
+	}
+
+	/**
+	 * 反序列化ByteBuffer中剩余的字节，不改变其position
+	 * @param buffer
+	 * @return
+	 * @throws JsonException
+	 */
+	public Object deserialize(ByteBuffer buffer) {
+		this.reset(buffer);
+
+		return this.deserialize();
+	}
+
+	/**
+	 * 从输入流反序列化
+	 * @param in
+	 * @return
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public Object deserialize(InputStream in) {
+		this.reset(in);
+
+		return this.deserialize();
+	}
+
+	/**
+	 * 映射并反序列化整个文件
+	 * @param channel
+	 * @return
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public Object deserialize(FileChannel channel) {
+		this.reset(channel);
+
+		return this.deserialize();
+	}
+
+	/**
+	 * 事件驱动解析字节数组
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param handler
+	 * @throws JsonException
+	 */
+	public void deserialize(byte[] bytes, int offset, int length,
+			JsonHandler handler) {
+		this.reset(bytes, offset, length);
+
+		this.deserialize(handler);
+	}
+
+	/**
+	 * 事件驱动解析ByteBuffer中剩余的字节，不改变其position
+	 * @param buffer
+	 * @param handler
+	 * @throws JsonException
+	 */
+	public void deserialize(ByteBuffer buffer, JsonHandler handler) {
+		this.reset(buffer);
+
+		this.deserialize(handler);
+	}
+
+	/**
+	 * 从输入流事件驱动解析
+	 * @param in
+	 * @param handler
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public void deserialize(InputStream in, JsonHandler handler) {
+		this.reset(in);
+
+		this.deserialize(handler);
+	}
+
+	/**
+	 * 映射并事件驱动解析整个文件
+	 * @param channel
+	 * @param handler
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public void deserialize(FileChannel channel, JsonHandler handler) {
+		this.reset(channel);
+
+		this.deserialize(handler);
+	}
+
+	private Object deserialize() {
+		Charset charset = this.detectCharset();
+		if (charset != null) {
+			return new JsonDeserializer().deserialize(this.decoder(charset));
+		}
+		return this.value(this.nextNonWhiteSpace());
+	}
+
+	private void deserialize(JsonHandler handler) {
+		Charset charset = this.detectCharset();
+		if (charset != null) {
+			new JsonDeserializer().deserialize(this.decoder(charset), handler);
+			return;
+		}
+		this.handle(this.nextNonWhiteSpace(), handler);
+	}
+
+	void reset(byte[] bytes, int offset, int length) {
+		this.buf = bytes;
+		this.pos = offset;
+		this.limit = offset + length;
+		this.in = null;
+		this.source = null;
+		this.channel = null;
+	}
+
+	void reset(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			this.reset(buffer.array(), buffer.arrayOffset()
+					+ buffer.position(), buffer.remaining());
+			return;
+		}
+		// 直接内存或只读的缓冲区分块复制到堆上
+		this.buf = new byte[BUFFER_SIZE];
+		this.pos = 0;
+		this.limit = 0;
+		this.in = null;
+		this.source = buffer.duplicate();
+		this.channel = null;
+	}
+
+	void reset(InputStream in) {
+		this.buf = new byte[BUFFER_SIZE];
+		this.pos = 0;
+		this.limit = 0;
+		this.in = in;
+		this.source = null;
+		this.channel = null;
+	}
+
+	void reset(FileChannel channel) {
+		this.buf = new byte[BUFFER_SIZE];
+		this.pos = 0;
+		this.limit = 0;
+		this.in = null;
+		this.source = null;
+		this.channel = channel;
+		this.mapped = 0;
+	}
+
+	/**
+	 * 根据BOM或开头的零字节识别编码，UTF-8时跳过BOM
+	 *
+	 * @return UTF-8时返回null
+	 */
+	private Charset detectCharset() {
+		// 保证缓冲区中至少有4个字节用于识别
+		while (this.limit - this.pos < 4 && this.append()) {
+		}
+
+		byte[] b = this.buf;
+		int p = this.pos;
+		int n = this.limit - p;
+
+		if (n >= 3 && b[p] == (byte) 0xEF && b[p + 1] == (byte) 0xBB
+				&& b[p + 2] == (byte) 0xBF) {
+			this.pos += 3;
+			return null;
+		}
+		if (n >= 4 && b[p] == 0 && b[p + 1] == 0 && b[p + 2] == (byte) 0xFE
+				&& b[p + 3] == (byte) 0xFF) {
+			this.pos += 4;
+			return UTF_32BE;
+		}
+		if (n >= 4 && b[p] == (byte) 0xFF && b[p + 1] == (byte) 0xFE
+				&& b[p + 2] == 0 && b[p + 3] == 0) {
+			this.pos += 4;
+			return UTF_32LE;
+		}
+		if (n >= 2 && b[p] == (byte) 0xFE && b[p + 1] == (byte) 0xFF) {
+			this.pos += 2;
+			return UTF_16BE;
+		}
+		if (n >= 2 && b[p] == (byte) 0xFF && b[p + 1] == (byte) 0xFE) {
+			this.pos += 2;
+			return UTF_16LE;
+		}
+
+		// 没有BOM时，Json文本的前两个字符都是ASCII，由零字节的位置判断编码
+		if (n >= 4) {
+			if (b[p] == 0 && b[p + 1] == 0 && b[p + 2] == 0) {
+				return UTF_32BE;
+			}
+			if (b[p + 1] == 0 && b[p + 2] == 0 && b[p + 3] == 0) {
+				return UTF_32LE;
+			}
+		}
+		if (n >= 2) {
+			if (b[p] == 0) {
+				return UTF_16BE;
+			}
+			if (b[p + 1] == 0) {
+				return UTF_16LE;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 以指定编码解码剩余的输入
+	 *
+	 * @param charset
+	 * @return
+	 */
+	private Reader decoder(Charset charset) {
+		InputStream rest = new ByteArrayInputStream(this.buf, this.pos,
+				this.limit - this.pos);
+		if (this.in != null) {
+			rest = new SequenceInputStream(rest, this.in);
+		} else if (this.source != null) {
+			byte[] remaining = new byte[this.source.remaining()];
+			this.source.get(remaining);
+			rest = new SequenceInputStream(rest, new ByteArrayInputStream(
+					remaining));
+		}
+		if (this.channel != null) {
+			try {
+				rest = new SequenceInputStream(rest, Channels
+						.newInputStream(this.channel.position(this.mapped)));
+			} catch (IOException e) {
+				throw new JsonException(e);
+			}
+		}
+		return new InputStreamReader(rest, charset);
+	}
+
+	/**
+	 * 输入是否需要分块读入缓冲区
+	 *
+	 * @return 解析字节数组时返回false
+	 */
+	private boolean isChunked() {
+		return this.in != null || this.source != null || this.channel != null;
+	}
+
+	/**
+	 * 缓冲区读完后重新填充
+	 *
+	 * @return 没有更多输入时返回false
+	 */
+	private boolean fill() {
+		if (!this.isChunked()) {
+			return false;
+		}
+		this.pos = 0;
+		this.limit = 0;
+		return this.append();
+	}
+
+	/**
+	 * 在缓冲区已有内容之后追加读取
+	 *
+	 * @return 没有更多输入时返回false
+	 */
+	private boolean append() {
+		int off = this.limit;
+		int len = this.buf.length - off;
+
+		if ((this.source == null || !this.source.hasRemaining())
+				&& this.channel != null && !this.map()) {
+			return false;
+		}
+		if (this.source != null) {
+			int n = Math.min(len, this.source.remaining());
+			if (n == 0) {
+				return false;
+			}
+			this.source.get(this.buf, off, n);
+			this.limit += n;
+			return true;
+		}
+		if (this.in == null) {
+			return false;
+		}
+		try {
+			int n;
+			do {
+				n = this.in.read(this.buf, off, len);
+			} while (n == 0);
+
+			if (n < 0) {
+				return false;
+			}
+			this.limit += n;
+			return true;
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * 映射文件的下一个窗口
+	 *
+	 * @return 文件已映射完时返回false
+	 */
+	private boolean map() {
+		try {
+			long size = this.channel.size();
+			if (this.mapped >= size) {
+				return false;
+			}
+			long length = Math.min(size - this.mapped, this.mapWindow);
+			this.source = this.channel.map(FileChannel.MapMode.READ_ONLY,
+					this.mapped, length);
+			this.mapped += length;
+			return true;
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * 读取并消费下一个字节
+	 *
+	 * @return 输入结束时返回EOF
+	 */
+	private int read() {
+		if (this.pos >= this.limit && !this.fill()) {
+			return EOF;
+		}
+		return this.buf[this.pos++] & 0xFF;
+	}
+
+	/**
+	 * 跳过空白，返回下一个字符但不消费
+	 *
+	 * @return 输入结束时返回EOF
+	 */
+	@Override
+	int nextNonWhiteSpace() {
+		while (true) {
+			byte[] buf = this.buf;
+			int pos = this.pos;
+			int limit = this.limit;
+
+			while ((pos = SCANNER.skipWhiteSpace(buf, pos, limit)) < limit) {
+				byte b = buf[pos];
+				if (b >= 0) {
+					this.pos = pos;
+					return b;
+				} else {
+					// 值之外的非ASCII字符只可能是空白，否则就是格式错误
+					this.pos = pos + 1;
+					int c = this.decode(b & 0xFF);
+					if (!Character.isWhitespace(c)) {
+						throw this.jsonException(c);
+					}
+					buf = this.buf;
+					pos = this.pos;
+					limit = this.limit;
+				}
+			}
+
+			this.pos = pos;
+			if (!this.fill()) {
+				return EOF;
+			}
+		}
+	}
+
+	/**
+	 * 解析数组中[start, end)范围内以逗号分隔的元素，见{@link JsonLexer#elements(int, boolean)}
+	 *
+	 * @param buf
+	 * @param start
+	 * @param end
+	 * @param last
+	 * @return
+	 */
+	List<Object> elements(byte[] buf, int start, int end, boolean last) {
+		this.reset(buf, start, end + 1 - start);
+		return this.elements(end, last);
+	}
+
+	@Override
+	void literal(String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			int c = this.read();
+			if (c != literal.charAt(i)) {
+				throw this.jsonException(c < 128 ? c : this.decode(c));
+			}
+		}
+	}
+
+	/**
+	 * 解析数字，与{@link JsonDeserializer#scanNumber()}相同
+	 *
+	 * @return {@link JsonLexer#NUMBER_LONG}、{@link JsonLexer#NUMBER_DOUBLE}或
+	 *         {@link JsonLexer#NUMBER_BIG}
+	 * @throws JsonException
+	 */
+	@Override
+	int scanNumber() {
+		byte[] buf = this.buf;
+		int start = this.pos;
+		int end = start;
+		int limit = this.limit;
+
+		while (end < limit && isNumberChar(buf[end])) {
+			end++;
+		}
+		if (end == limit && this.isChunked()) {
+			// 数字可能跨越缓冲区边界
+			return this.scanNumber(this.numberText());
+		}
+
+		int i = start;
+		boolean negative = buf[i] == '-';
+		if (negative) {
+			i++;
+		}
+
+		long mantissa = 0;
+		int integer = i;
+		int d;
+		while (i < end && (d = buf[i] - '0') >= 0 && d <= 9) {
+			mantissa = mantissa * 10 + d;
+			i++;
+		}
+		int digits = i - integer;
+		if (i == end) {
+			this.pos = end;
+			if (digits > 0 && digits < NumberParser.MAX_DIGITS) {
+				this.longValue = negative ? -mantissa : mantissa;
+				return NUMBER_LONG;
+			}
+			// 可能超出long范围的整数
+			return this.scanNumber(new String(buf, start, end - start, ISO_8859_1));
+		}
+
+		boolean valid = digits > 0;
+		int exponent = 0;
+		if (i < end && buf[i] == '.') {
+			int fraction = ++i;
+			while (i < end && (d = buf[i] - '0') >= 0 && d <= 9) {
+				mantissa = mantissa * 10 + d;
+				i++;
+			}
+			valid &= i > fraction;
+			digits += i - fraction;
+			exponent = fraction - i;
+		}
+		if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+			boolean negativeExponent = false;
+			if (++i < end && (buf[i] == '-' || buf[i] == '+')) {
+				negativeExponent = buf[i++] == '-';
+			}
+			int e = 0;
+			int digit = i;
+			while (i < end && (d = buf[i] - '0') >= 0 && d <= 9) {
+				if (e < 100000) {
+					e = e * 10 + d;
+				}
+				i++;
+			}
+			valid &= i > digit;
+			exponent += negativeExponent ? -e : e;
+		}
+
+		this.pos = end;
+		if (valid && i == end && digits <= NumberParser.MAX_DIGITS) {
+			double value = NumberParser.toDouble(mantissa, exponent, negative);
+			if (!Double.isNaN(value)) {
+				this.doubleValue = value;
+				return NUMBER_DOUBLE;
+			}
+		}
+		return this.scanNumber(new String(buf, start, end - start, ISO_8859_1));
+	}
+
+	private int scanNumber(String text) {
+		Number value = NumberParser.parse(text);
+		if (value instanceof Long) {
+			this.longValue = value.longValue();
+			return NUMBER_LONG;
+		} else if (value instanceof Double) {
+			this.doubleValue = value.doubleValue();
+			return NUMBER_DOUBLE;
+		}
+		this.bigValue = value;
+		return NUMBER_BIG;
+	}
+
+	private String numberText() {
+		byte[] buf = this.buf;
+		int start = this.pos;
+		int pos = start;
+		int limit = this.limit;
+
+		while (pos < limit && isNumberChar(buf[pos])) {
+			pos++;
+		}
+
+		if (pos < limit || !this.isChunked()) {
+			this.pos = pos;
+			return new String(buf, start, pos - start, ISO_8859_1);
+		}
+
+		// 数字跨越缓冲区边界
+		StringBuilder sb = this.sb;
+		sb.setLength(0);
+		for (int i = start; i < pos; i++) {
+			sb.append((char) buf[i]);
+		}
+		this.pos = pos;
+		while (this.pos < this.limit || this.fill()) {
+			byte b = this.buf[this.pos];
+			if (!isNumberChar(b)) {
+				break;
+			}
+			sb.append((char) b);
+			this.pos++;
+		}
+		return sb.toString();
+	}
+
+	private static boolean isNumberChar(byte b) {
+		return b >= 0 && (CHAR_TYPES[b] & NUMBER_CHAR) != 0;
+	}
+
+	/**
+	 * 解析属性名，开头的引号已被消费
+	 * <p>
+	 * 不含转义的短ASCII属性名经{@link SymbolTable}规范化，重复出现时不再创建字符串
+	 *
+	 * @param quote
+	 * @return
+	 */
+	@Override
+	String name(char quote) {
+		byte[] buf = this.buf;
+		int start = this.pos;
+		int end = Math.min(this.limit, start + SymbolTable.MAX_LENGTH);
+		int hash = 0;
+
+		for (int pos = start; pos < end; pos++) {
+			byte b = buf[pos];
+			if (b == quote) {
+				this.pos = pos + 1;
+				return SymbolTable.lookup(buf, start, pos - start, hash);
+			} else if (b == '\\' || b < 0) {
+				break;
+			}
+			hash = 31 * hash + b;
+		}
+		return this.string(quote);
+	}
+
+	/**
+	 * 解析字符串，开头的引号已被消费
+	 *
+	 * @param quote
+	 * @return
+	 */
+	@Override
+	String string(char quote) {
+		byte[] buf = this.buf;
+		int start = this.pos;
+		int pos = start;
+		int limit = this.limit;
+		boolean ascii = true;
+
+		// 快速路径：不含转义字符且不跨越缓冲区时整段解码
+		pos = SCANNER.scanAscii(buf, pos, limit, (byte) quote);
+		if (pos < limit && buf[pos] < 0) {
+			ascii = false;
+			pos = SCANNER.scanString(buf, pos, limit, (byte) quote);
+		}
+		if (pos < limit && buf[pos] == quote) {
+			this.pos = pos + 1;
+			return new String(buf, start, pos - start, ascii ? ISO_8859_1
+					: UTF_8);
+		}
+
+		StringBuilder sb = this.sb;
+		sb.setLength(0);
+		if (pos < limit) {
+			// 遇到转义，之前的内容不会截断多字节字符
+			sb.append(new String(buf, start, pos - start, ascii ? ISO_8859_1
+					: UTF_8));
+			this.pos = pos;
+		} else {
+			// 跨越缓冲区边界，逐字节解码
+			this.pos = start;
+		}
+
+		while (true) {
+			int c = this.read();
+			if (c == quote || c == EOF) {
+				// EOF时为未闭合的字符串
+				return sb.toString();
+			} else if (c >= 128) {
+				sb.appendCodePoint(this.decode(c));
+				continue;
+			} else if (c != '\\') {
+				sb.append((char) c);
+				continue;
+			}
+
+			c = this.read();
+			switch (c) {
+			case EOF:
+				return sb.toString();
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				sb.append(this.unicode());
+				break;
+			default:
+				// 包括 " \ / ' 等，原样保留
+				sb.appendCodePoint(c < 128 ? c : this.decode(c));
+			}
+		}
+	}
+
+	/**
+	 * 跳过字符串，不构建字符串对象，开头的引号已被消费
+	 * <p>
+	 * UTF-8多字节字符的每个字节都不小于0x80，不会与引号或反斜杠混淆
+	 *
+	 * @param quote
+	 */
+	void skipString(char quote) {
+		while (true) {
+			this.pos = SCANNER.scanString(this.buf, this.pos, this.limit,
+					(byte) quote);
+			int c = this.read();
+			if (c == quote || c == EOF) {
+				return;
+			} else if (c == '\\' && this.read() == EOF) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 解码以lead开头的UTF-8多字节字符，lead已被消费
+	 *
+	 * @param lead
+	 * @return 码点，非法序列返回替换字符
+	 */
+	private int decode(int lead) {
+		int n;
+		int cp;
+		int min;
+		if ((lead & 0xE0) == 0xC0) {
+			n = 1;
+			cp = lead & 0x1F;
+			min = 0x80;
+		} else if ((lead & 0xF0) == 0xE0) {
+			n = 2;
+			cp = lead & 0x0F;
+			min = 0x800;
+		} else if ((lead & 0xF8) == 0xF0) {
+			n = 3;
+			cp = lead & 0x07;
+			min = 0x10000;
+		} else {
+			return REPLACEMENT;
+		}
+
+		for (int i = 0; i < n; i++) {
+			int c = this.read();
+			if ((c & 0xC0) != 0x80) {
+				// 非后续字节留给调用者处理
+				if (c != EOF) {
+					this.pos--;
+				}
+				return REPLACEMENT;
+			}
+			cp = (cp << 6) | (c & 0x3F);
+		}
+
+		// 过长编码、代理区和超出范围的码点
+		if (cp < min || cp > Character.MAX_CODE_POINT
+				|| (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+			return REPLACEMENT;
+		}
+		return cp;
+	}
+
+	private char unicode() {
+		int value = 0;
+
+		for (int i = 0; i < 4; ++i) {
+			int c = this.read();
+			switch (c) {
+			case '0':
+			case '1':
+			case '2':
+			case '3':
+			case '4':
+			case '5':
+			case '6':
+			case '7':
+			case '8':
+			case '9':
+				value = (value << 4) + (c - '0');
+
+				break;
+
+			case 'a':
+			case 'b':
+			case 'c':
+			case 'd':
+			case 'e':
+			case 'f':
+				value = (value << 4) + (c - 'W');
+
+				break;
+
+			case 'A':
+			case 'B':
+			case 'C':
+			case 'D':
+			case 'E':
+			case 'F':
+				value = (value << 4) + (c - '7');
+
+				break;
+
+			default:
+				throw this.jsonException(c < 128 ? c : this.decode(c));
+			}
+		}
+
+		return (char) value;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.IOException;
+
+/**
+ * 编解码器接口，负责将某一Java类型写出为Json
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ * 
+ * @param <T>
+ */
+public interface JsonCodec<T> {
+	/**
+	 * 写出对象
+	 * 
+	 * @param value
+	 *            非null的待序列化对象
+	 * @param writer
+	 *            流式输出器
+	 * @param serializer
+	 *            当前序列化器，用于写出嵌套的值
+	 * @throws IOException
+	 */
+	void write(T value, JsonWriter writer, JsonSerializer serializer)
+			throws IOException;
+}
@@ -15,238 +15,654 @@
  */
 package commons.json;
 
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 反序列化对象
+ * <p>
+ * char[]上的词法游标，字符类别查表判断，对象和数组的语法由{@link JsonLexer}实现。
+ * 从Reader读取时使用固定大小的缓冲区循环填充，内存占用只与嵌套深度和缓冲区大小有关。
+ *
  * @author yuanyan.cao@gmail.com
  * @version 1.0
  */
-class JsonDeserializer {
-	private static final Object OBJECT_END = new Object();
-	private static final Object ARRAY_END = new Object();
-	private static final Object COLON = new Object();
-	private static final Object COMMA = new Object();
-	private static Map<Character, Character> escapes = new HashMap<Character, Character>();
-
-	static {
-		escapes.put(new Character('"'), new Character('"'));
-		escapes.put(new Character('\\'), new Character('\\'));
-		escapes.put(new Character('/'), new Character('/'));
-		escapes.put(new Character('b'), new Character('\b'));
-		escapes.put(new Character('f'), new Character('\f'));
-		escapes.put(new Character('n'), new Character('\n'));
-		escapes.put(new Character('r'), new Character('\r'));
-		escapes.put(new Character('t'), new Character('\t'));
-	}
+class JsonDeserializer extends JsonLexer {
+	/**
+	 * 从Reader读取时的缓冲区大小
+	 */
+	private static final int BUFFER_SIZE = 8192;
 
-	private CharacterIterator it;
-	private char c;
-	private Object token;
-	private StringBuilder buf = new StringBuilder();
+	private char[] buf;
+	/**
+	 * 输入源，解析字符串时为null
+	 */
+	private Reader reader;
+	private StringBuilder sb = new StringBuilder();
 
-	private char next() {
-		this.c = this.it.next();
+	/**
+	 * 反序列化对象
+	 * @param string
+	 * @return
+	 * @throws JsonException
+	 */
+	public Object deserialize(String string){
+		this.reset(string);
 
-		return this.c;
+		return this.value(this.nextNonWhiteSpace());
 	}
 
-	private void skipWhiteSpace() {
-		while (Character.isWhitespace(this.c)) {
-			this.next();
-		}
+	/**
+	 * 从Reader流式反序列化对象
+	 * @param reader
+	 * @return
+	 * @throws JsonException
+	 *             when IOException happens
+	 */
+	public Object deserialize(Reader reader) {
+		this.reset(reader);
+
+		return this.value(this.nextNonWhiteSpace());
 	}
+
 	/**
-	 * 反序列化对象
+	 * 事件驱动解析，依次回调handler
 	 * @param string
-	 * @return
+	 * @param handler
 	 * @throws JsonException
 	 */
-	public Object deserialize(String string){
-		this.it = new StringCharacterIterator(string);
-		this.c = this.it.first();
+	public void deserialize(String string, JsonHandler handler) {
+		this.reset(string);
+
+		this.handle(this.nextNonWhiteSpace(), handler);
+	}
+
+	/**
+	 * 从Reader事件驱动解析，依次回调handler
+	 * @param reader
+	 * @param handler
+	 * @throws JsonException
+	 */
+	public void deserialize(Reader reader, JsonHandler handler) {
+		this.reset(reader);
+
+		this.handle(this.nextNonWhiteSpace(), handler);
+	}
+
+	/**
+	 * 以字符串为输入源
+	 *
+	 * @param string
+	 */
+	void reset(String string) {
+		this.buf = string.toCharArray();
+		this.pos = 0;
+		this.limit = this.buf.length;
+		this.reader = null;
+	}
+
+	/**
+	 * 以字符数组中的一段为输入源
+	 *
+	 * @param buf
+	 * @param start
+	 * @param end
+	 */
+	void reset(char[] buf, int start, int end) {
+		this.buf = buf;
+		this.pos = start;
+		this.limit = end;
+		this.reader = null;
+	}
 
-		return this.deserialize();
+	/**
+	 * 以Reader为输入源
+	 *
+	 * @param reader
+	 */
+	void reset(Reader reader) {
+		this.buf = new char[BUFFER_SIZE];
+		this.pos = 0;
+		this.limit = 0;
+		this.reader = reader;
 	}
 
-	private Object deserialize(){
-		Object ret = null;
-
-		this.skipWhiteSpace();
-
-		if (this.c == '"') {
-			this.next();
-			ret = this.string('"');
-		} else if (this.c == '\'') {
-			this.next();
-			ret = this.string('\'');
-		} else if (this.c == '[') {
-			this.next();
-			ret = this.array();
-		} else if (this.c == ']') {
-			ret = ARRAY_END;
-			this.next();
-		} else if (this.c == ',') {
-			ret = COMMA;
-			this.next();
-		} else if (this.c == '{') {
-			this.next();
-			ret = this.object();
-		} else if (this.c == '}') {
-			ret = OBJECT_END;
-			this.next();
-		} else if (this.c == ':') {
-			ret = COLON;
-			this.next();
-		} else if ((this.c == 't') && (this.next() == 'r')
-				&& (this.next() == 'u') && (this.next() == 'e')) {
-			ret = Boolean.TRUE;
-			this.next();
-		} else if ((this.c == 'f') && (this.next() == 'a')
-				&& (this.next() == 'l') && (this.next() == 's')
-				&& (this.next() == 'e')) {
-			ret = Boolean.FALSE;
-			this.next();
-		} else if ((this.c == 'n') && (this.next() == 'u')
-				&& (this.next() == 'l') && (this.next() == 'l')) {
-			ret = null;
-			this.next();
-		} else if (Character.isDigit(this.c) || (this.c == '-')) {
-			ret = this.number();
-		} else {
-			throwJsonException();
+	/**
+	 * 缓冲区读完后重新填充
+	 *
+	 * @return 没有更多输入时返回false
+	 */
+	private boolean fill() {
+		if (this.reader == null) {
+			return false;
 		}
+		try {
+			int n;
+			do {
+				n = this.reader.read(this.buf, 0, this.buf.length);
+			} while (n == 0);
+
+			if (n < 0) {
+				return false;
+			}
+			this.pos = 0;
+			this.limit = n;
+			return true;
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+	}
 
-		this.token = ret;
+	/**
+	 * 读取并消费下一个字符
+	 *
+	 * @return 输入结束时返回EOF
+	 */
+	private int read() {
+		if (this.pos >= this.limit && !this.fill()) {
+			return EOF;
+		}
+		return this.buf[this.pos++];
+	}
 
-		return ret;
+	private static boolean isWhiteSpace(char c) {
+		return c < 128 ? (CHAR_TYPES[c] & WHITESPACE) != 0 : Character
+				.isWhitespace(c);
 	}
 
-	@SuppressWarnings("unchecked")
-	private Map object(){
-		Map ret = new HashMap();
-		Object next = this.deserialize();
-		if (next != OBJECT_END) {
-			String key = (String) next;
-			while (this.token != OBJECT_END) {
-				this.deserialize(); // should be a colon
-
-				if (this.token != OBJECT_END) {
-					ret.put(key, this.deserialize());
-
-					if (this.deserialize() == COMMA) {
-						Object name = this.deserialize();
-
-						if (name instanceof String) {
-							key = (String) name;
-						} else
-							throwJsonException();
-					}
-				}
+	/**
+	 * 跳过空白，返回下一个字符但不消费
+	 *
+	 * @return 输入结束时返回EOF
+	 */
+	@Override
+	int nextNonWhiteSpace() {
+		while (true) {
+			char[] buf = this.buf;
+			int pos = this.pos;
+			int limit = this.limit;
+
+			while (pos < limit && isWhiteSpace(buf[pos])) {
+				pos++;
+			}
+
+			this.pos = pos;
+			if (pos < limit) {
+				return buf[pos];
+			}
+			if (!this.fill()) {
+				return EOF;
 			}
 		}
+	}
 
-		return ret;
+	/**
+	 * 解析数组中[start, end)范围内以逗号分隔的元素，见{@link JsonLexer#elements(int, boolean)}
+	 *
+	 * @param buf
+	 * @param start
+	 * @param end
+	 * @param last
+	 * @return
+	 */
+	List<Object> elements(char[] buf, int start, int end, boolean last) {
+		this.reset(buf, start, end + 1);
+		return this.elements(end, last);
 	}
-	
+
 	/**
-	 * 
+	 * 延迟解析，对象和数组只记录位置，首次访问时才解析
+	 *
+	 * @param string
+	 * @return
+	 * @throws JsonException
 	 */
-	private void throwJsonException() {
-		throw new JsonException("非法的JSON格式字符： " + this.c);
+	public JsonAware deserializeLazy(String string) {
+		this.reset(string);
+
+		int c = this.nextNonWhiteSpace();
+		// 顶层的对象和数组不需要确定结束位置，无需跳过
+		if (c == '{') {
+			return new JsonObject(this.buf, this.pos + 1);
+		} else if (c == '[') {
+			return new JsonArray(this.buf, this.pos + 1);
+		}
+		return this.lazyValue(c);
 	}
 
-	@SuppressWarnings("unchecked")
-	private List array(){
-		List ret = new ArrayList();
-		Object value = this.deserialize();
+	/**
+	 * 解析延迟对象的直接成员
+	 *
+	 * @param buf
+	 * @param offset
+	 *            '{'之后的位置
+	 * @param target
+	 */
+	void lazyObject(char[] buf, int offset, JsonObject target) {
+		this.reset(buf, offset, buf.length);
 
-		while (this.token != ARRAY_END) {
-			ret.add(value);
+		int c = this.nextNonWhiteSpace();
+		if (c == '}') {
+			return;
+		}
+
+		while (true) {
+			if (c != '"' && c != '\'') {
+				throw this.jsonException(c);
+			}
+			this.pos++;
+			String key = this.name((char) c);
 
-			Object deserialize = this.deserialize();
-			if (deserialize == COMMA) {
-				value = this.deserialize();
-			} else if (deserialize != ARRAY_END) {
-				throwJsonException();
+			c = this.nextNonWhiteSpace();
+			if (c != ':') {
+				throw this.jsonException(c);
 			}
+			this.pos++;
+
+			target.put(key, this.lazyValue(this.nextNonWhiteSpace()));
+
+			c = this.nextNonWhiteSpace();
+			this.pos++;
+			if (c == '}') {
+				return;
+			} else if (c != ',') {
+				throw this.jsonException(c);
+			}
+			c = this.nextNonWhiteSpace();
 		}
+	}
 
-		return ret;
+	/**
+	 * 解析延迟数组的直接元素
+	 *
+	 * @param buf
+	 * @param offset
+	 *            '['之后的位置
+	 * @param target
+	 */
+	void lazyArray(char[] buf, int offset, JsonArray target) {
+		this.reset(buf, offset, buf.length);
+
+		int c = this.nextNonWhiteSpace();
+		while (c != ']') {
+			target.append(this.lazyValue(c));
+
+			c = this.nextNonWhiteSpace();
+			if (c == ',') {
+				this.pos++;
+				// 允许末尾多余的逗号
+				c = this.nextNonWhiteSpace();
+			} else if (c != ']') {
+				throw this.jsonException(c);
+			}
+		}
 	}
 
-	private Object number() {
-		this.buf.setLength(0);
+	/**
+	 * 解析以c开头的值，嵌套的对象和数组快速跳过并延迟解析
+	 *
+	 * @param c
+	 * @return
+	 */
+	private JsonAware lazyValue(int c) {
+		switch (c) {
+		case '"':
+		case '\'':
+			this.pos++;
+			return new JsonString(this.string((char) c));
+		case '{':
+			this.pos++;
+			JsonObject object = new JsonObject(this.buf, this.pos);
+			this.skipContainer();
+			return object;
+		case '[':
+			this.pos++;
+			JsonArray array = new JsonArray(this.buf, this.pos);
+			this.skipContainer();
+			return array;
+		case 't':
+			this.literal("true");
+			return JsonBoolean.getTrueInstance();
+		case 'f':
+			this.literal("false");
+			return JsonBoolean.getFalseInstance();
+		case 'n':
+			this.literal("null");
+			return JsonNull.getInstance();
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			return new JsonNumber((Number) this.number());
+		default:
+			throw this.jsonException(c);
+		}
+	}
 
-		if (this.c == '-') {
-			this.add();
+	/**
+	 * 跳过对象或数组的剩余部分，只跟踪引号和嵌套深度，不检查内部格式，开头的括号已被消费
+	 */
+	private void skipContainer() {
+		char[] buf = this.buf;
+		int limit = this.limit;
+		int depth = 1;
+
+		for (int pos = this.pos; pos < limit; pos++) {
+			switch (buf[pos]) {
+			case '"':
+			case '\'':
+				this.pos = pos + 1;
+				this.skipString(buf[pos]);
+				pos = this.pos - 1;
+				break;
+			case '[':
+			case '{':
+				depth++;
+				break;
+			case ']':
+			case '}':
+				if (--depth == 0) {
+					this.pos = pos + 1;
+					return;
+				}
+				break;
+			default:
+				break;
+			}
 		}
+		throw this.jsonException(EOF);
+	}
 
-		this.addDigits();
+	@Override
+	void literal(String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			int c = this.read();
+			if (c != literal.charAt(i)) {
+				throw this.jsonException(c);
+			}
+		}
+	}
 
-		if (this.c == '.') {
-			this.add();
-			this.addDigits();
+	/**
+	 * 解析数字，结果保存在{@link #longValue}、{@link #doubleValue}或{@link #bigValue}中
+	 * <p>
+	 * 数字在缓冲区内时直接累加各位数字，不创建字符串也不做装箱；
+	 * 超过19位有效数字或无法快速确定舍入时才解析数字文本。
+	 *
+	 * @return {@link #NUMBER_LONG}、{@link #NUMBER_DOUBLE}或{@link #NUMBER_BIG}
+	 * @throws JsonException
+	 */
+	@Override
+	int scanNumber() {
+		char[] buf = this.buf;
+		int start = this.pos;
+		int end = start;
+		int limit = this.limit;
+
+		while (end < limit && isNumberChar(buf[end])) {
+			end++;
+		}
+		if (end == limit && this.reader != null) {
+			// 数字可能跨越缓冲区边界
+			return this.scanNumber(this.numberText());
 		}
 
-		if ((this.c == 'e') || (this.c == 'E')) {
-			this.add();
+		int i = start;
+		boolean negative = buf[i] == '-';
+		if (negative) {
+			i++;
+		}
 
-			if ((this.c == '+') || (this.c == '-')) {
-				this.add();
+		long mantissa = 0;
+		int integer = i;
+		int d;
+		while (i < end && (d = buf[i] - '0') >= 0 && d <= 9) {
+			mantissa = mantissa * 10 + d;
+			i++;
+		}
+		int digits = i - integer;
+		if (i == end) {
+			this.pos = end;
+			if (digits > 0 && digits < NumberParser.MAX_DIGITS) {
+				this.longValue = negative ? -mantissa : mantissa;
+				return NUMBER_LONG;
 			}
+			// 可能超出long范围的整数
+			return this.scanNumber(new String(buf, start, end - start));
+		}
 
-			this.addDigits();
+		boolean valid = digits > 0;
+		int exponent = 0;
+		if (i < end && buf[i] == '.') {
+			int fraction = ++i;
+			while (i < end && (d = buf[i] - '0') >= 0 && d <= 9) {
+				mantissa = mantissa * 10 + d;
+				i++;
+			}
+			valid &= i > fraction;
+			digits += i - fraction;
+			exponent = fraction - i;
+		}
+		if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+			boolean negativeExponent = false;
+			if (++i < end && (buf[i] == '-' || buf[i] == '+')) {
+				negativeExponent = buf[i++] == '-';
+			}
+			int e = 0;
+			int digit = i;
+			while (i < end && (d = buf[i] - '0') >= 0 && d <= 9) {
+				if (e < 100000) {
+					e = e * 10 + d;
+				}
+				i++;
+			}
+			valid &= i > digit;
+			exponent += negativeExponent ? -e : e;
 		}
 
-		return (this.buf.indexOf(".") >= 0) ? (Object) Double
-				.parseDouble(this.buf.toString()) : (Object) Long
-				.parseLong(this.buf.toString());
+		this.pos = end;
+		if (valid && i == end && digits <= NumberParser.MAX_DIGITS) {
+			double value = NumberParser.toDouble(mantissa, exponent, negative);
+			if (!Double.isNaN(value)) {
+				this.doubleValue = value;
+				return NUMBER_DOUBLE;
+			}
+		}
+		return this.scanNumber(new String(buf, start, end - start));
 	}
 
-	private Object string(char quote) {
-		this.buf.setLength(0);
+	private int scanNumber(String text) {
+		Number value = NumberParser.parse(text);
+		if (value instanceof Long) {
+			this.longValue = value.longValue();
+			return NUMBER_LONG;
+		} else if (value instanceof Double) {
+			this.doubleValue = value.doubleValue();
+			return NUMBER_DOUBLE;
+		}
+		this.bigValue = value;
+		return NUMBER_BIG;
+	}
 
-		while (this.c != quote && this.c != StringCharacterIterator.DONE) {
-			if (this.c == '\\') {
-				this.next();
+	private String numberText() {
+		char[] buf = this.buf;
+		int start = this.pos;
+		int pos = start;
+		int limit = this.limit;
 
-				if (this.c == 'u') {
-					this.add(this.unicode());
-				} else {
-					Object value = escapes.get(new Character(this.c));
+		while (pos < limit && isNumberChar(buf[pos])) {
+			pos++;
+		}
 
-					if (value != null) {
-						this.add(((Character) value).charValue());
-					}
-				}
-			} else {
-				this.add();
-			}
+		if (pos < limit || this.reader == null) {
+			this.pos = pos;
+			return new String(buf, start, pos - start);
 		}
 
-		this.next();
+		// 数字跨越缓冲区边界
+		StringBuilder sb = this.sb;
+		sb.setLength(0);
+		sb.append(buf, start, pos - start);
+		this.pos = pos;
+		while (this.pos < this.limit || this.fill()) {
+			char c = this.buf[this.pos];
+			if (!isNumberChar(c)) {
+				break;
+			}
+			sb.append(c);
+			this.pos++;
+		}
+		return sb.toString();
+	}
 
-		return this.buf.toString();
+	private static boolean isNumberChar(char c) {
+		return c < 128 && (CHAR_TYPES[c] & NUMBER_CHAR) != 0;
 	}
 
-	private void add(char cc) {
-		this.buf.append(cc);
-		this.next();
+	/**
+	 * 解析属性名，开头的引号已被消费
+	 * <p>
+	 * 不含转义的短属性名经{@link SymbolTable}规范化，重复出现时不再创建字符串
+	 *
+	 * @param quote
+	 * @return
+	 */
+	@Override
+	String name(char quote) {
+		char[] buf = this.buf;
+		int start = this.pos;
+		int end = Math.min(this.limit, start + SymbolTable.MAX_LENGTH);
+		int hash = 0;
+
+		for (int pos = start; pos < end; pos++) {
+			char c = buf[pos];
+			if (c == quote) {
+				this.pos = pos + 1;
+				return SymbolTable.lookup(buf, start, pos - start, hash);
+			} else if (c == '\\') {
+				break;
+			}
+			hash = 31 * hash + c;
+		}
+		return this.string(quote);
 	}
 
-	private void add() {
-		this.add(this.c);
+	/**
+	 * 解析字符串，开头的引号已被消费
+	 *
+	 * @param quote
+	 * @return
+	 */
+	@Override
+	String string(char quote) {
+		char[] buf = this.buf;
+		int start = this.pos;
+		int pos = start;
+		int limit = this.limit;
+
+		// 快速路径：不含转义字符且不跨越缓冲区时直接截取
+		while (pos < limit) {
+			char c = buf[pos];
+			if (c < 128 && (CHAR_TYPES[c] & STRING_SPECIAL) != 0) {
+				if (c == quote) {
+					this.pos = pos + 1;
+					return new String(buf, start, pos - start);
+				} else if (c == '\\') {
+					break;
+				}
+			}
+			pos++;
+		}
+
+		StringBuilder sb = this.sb;
+		sb.setLength(0);
+		sb.append(buf, start, pos - start);
+		this.pos = pos;
+
+		while (true) {
+			int c = this.read();
+			if (c == quote || c == EOF) {
+				// EOF时为未闭合的字符串
+				return sb.toString();
+			} else if (c != '\\') {
+				sb.append((char) c);
+				continue;
+			}
+
+			c = this.read();
+			switch (c) {
+			case EOF:
+				return sb.toString();
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				sb.append(this.unicode());
+				break;
+			default:
+				// 包括 " \ / ' 等，原样保留
+				sb.append((char) c);
+			}
+		}
 	}
 
-	private void addDigits() {
-		while (Character.isDigit(this.c)) {
-			this.add();
+	/**
+	 * 跳过字符串，不构建字符串对象，开头的引号已被消费
+	 * <p>
+	 * 与{@link #string(char)}接受相同的输入，Unicode转义必须是4位十六进制数字
+	 *
+	 * @param quote
+	 * @throws JsonException
+	 */
+	void skipString(char quote) {
+		while (true) {
+			char[] buf = this.buf;
+			int pos = this.pos;
+			int limit = this.limit;
+
+			while (pos < limit) {
+				char c = buf[pos++];
+				if (c == quote) {
+					this.pos = pos;
+					return;
+				} else if (c == '\\') {
+					this.pos = pos;
+					int escaped = this.read();
+					if (escaped == EOF) {
+						return;
+					} else if (escaped == 'u') {
+						this.unicode();
+					}
+					buf = this.buf;
+					pos = this.pos;
+					limit = this.limit;
+				}
+			}
+
+			this.pos = pos;
+			if (!this.fill()) {
+				return;
+			}
 		}
 	}
 
@@ -254,7 +670,8 @@ class JsonDeserializer {
 		int value = 0;
 
 		for (int i = 0; i < 4; ++i) {
-			switch (this.next()) {
+			int c = this.read();
+			switch (c) {
 			case '0':
 			case '1':
 			case '2':
@@ -265,7 +682,7 @@ class JsonDeserializer {
 			case '7':
 			case '8':
 			case '9':
-				value = (value << 4) + (this.c - '0');
+				value = (value << 4) + (c - '0');
 
 				break;
 
@@ -275,7 +692,7 @@ class JsonDeserializer {
 			case 'd':
 			case 'e':
 			case 'f':
-				value = (value << 4) + (this.c - 'W');
+				value = (value << 4) + (c - 'W');
 
 				break;
 
@@ -285,9 +702,12 @@ class JsonDeserializer {
 			case 'D':
 			case 'E':
 			case 'F':
-				value = (value << 4) + (this.c - '7');
+				value = (value << 4) + (c - '7');
 
 				break;
+
+			default:
+				throw this.jsonException(c);
 			}
 		}
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+/**
+ * 事件驱动（推送式）解析的回调接口
+ * <p>
+ * 由{@link Json#parse(String, JsonHandler)}驱动，不构建任何对象模型，
+ * 数字以基本类型回调，不做装箱。
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public interface JsonHandler {
+	/**
+	 * 对象开始
+	 */
+	void startObject();
+
+	/**
+	 * 属性名
+	 * 
+	 * @param name
+	 */
+	void key(String name);
+
+	/**
+	 * 对象结束
+	 */
+	void endObject();
+
+	/**
+	 * 数组开始
+	 */
+	void startArray();
+
+	/**
+	 * 数组结束
+	 */
+	void endArray();
+
+	/**
+	 * 字符串值
+	 * 
+	 * @param value
+	 */
+	void value(String value);
+
+	/**
+	 * 整数值
+	 * 
+	 * @param value
+	 */
+	void value(long value);
+
+	/**
+	 * 浮点数值
+	 * 
+	 * @param value
+	 */
+	void value(double value);
+
+	/**
+	 * 超出long范围的整数（BigInteger）或超出double范围的浮点数（BigDecimal）
+	 * <p>
+	 * 转换为double会丢失精度，默认抛出异常，需要处理这类数值时覆盖此方法。
+	 * 
+	 * @param value
+	 * @throws JsonException
+	 */
+	default void value(Number value) {
+		throw new JsonException("数值超出long和double的范围，需要覆盖JsonHandler.value(Number):"
+				+ value);
+	}
+
+	/**
+	 * 布尔值
+	 * 
+	 * @param value
+	 */
+	void value(boolean value);
+
+	/**
+	 * null值
+	 */
+	void nullValue();
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 词法游标，以及在其上实现的递归下降语法
+ * <p>
+ * 子类在具体的输入上实现游标操作：跳过空白、解析字符串、属性名、字面量和数字，
+ * {@link JsonDeserializer}读取char[]，{@link JsonByteDeserializer}直接读取UTF-8字节。
+ * 结构字符都是ASCII，{@link #pos}在两种输入上含义相同，
+ * 对象和数组的语法、构建Map和List以及回调{@link JsonHandler}都只在此实现一次。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+abstract class JsonLexer {
+	/**
+	 * 输入结束
+	 */
+	static final int EOF = -1;
+
+	/**
+	 * 字符类别：空白
+	 */
+	static final byte WHITESPACE = 1;
+	/**
+	 * 字符类别：字符串中需要特殊处理的字符（引号、反斜杠）
+	 */
+	static final byte STRING_SPECIAL = 2;
+	/**
+	 * 字符类别：可能出现在数字中的字符
+	 */
+	static final byte NUMBER_CHAR = 4;
+
+	/**
+	 * 数字类型：整数
+	 */
+	static final int NUMBER_LONG = 1;
+	/**
+	 * 数字类型：浮点数
+	 */
+	static final int NUMBER_DOUBLE = 2;
+	/**
+	 * 数字类型：超出long范围的整数或超出double范围的浮点数
+	 */
+	static final int NUMBER_BIG = 3;
+
+	/**
+	 * ASCII字符类别表
+	 */
+	static final byte[] CHAR_TYPES = new byte[128];
+
+	static {
+		// 与Character.isWhitespace在ASCII范围内一致
+		for (char c : new char[] { ' ', '\t', '\n', '\u000b', '\f', '\r',
+				'\u001c', '\u001d', '\u001e', '\u001f' }) {
+			CHAR_TYPES[c] |= WHITESPACE;
+		}
+		CHAR_TYPES['"'] |= STRING_SPECIAL;
+		CHAR_TYPES['\''] |= STRING_SPECIAL;
+		CHAR_TYPES['\\'] |= STRING_SPECIAL;
+		for (char c : "0123456789+-.eE".toCharArray()) {
+			CHAR_TYPES[c] |= NUMBER_CHAR;
+		}
+	}
+
+	/**
+	 * 缓冲区中的当前位置和结束位置
+	 */
+	int pos;
+	int limit;
+
+	/**
+	 * 最近一次{@link #scanNumber()}得到的整数值
+	 */
+	long longValue;
+	/**
+	 * 最近一次{@link #scanNumber()}得到的浮点数值
+	 */
+	double doubleValue;
+	/**
+	 * 最近一次{@link #scanNumber()}得到的BigInteger或BigDecimal
+	 */
+	Number bigValue;
+
+	/**
+	 * 跳过空白，返回下一个字符但不消费
+	 *
+	 * @return 输入结束时返回EOF
+	 */
+	abstract int nextNonWhiteSpace();
+
+	/**
+	 * 解析属性名，开头的引号已被消费
+	 *
+	 * @param quote
+	 * @return
+	 */
+	abstract String name(char quote);
+
+	/**
+	 * 解析字符串，开头的引号已被消费
+	 *
+	 * @param quote
+	 * @return
+	 */
+	abstract String string(char quote);
+
+	/**
+	 * 读取并校验true、false、null字面量
+	 *
+	 * @param literal
+	 * @throws JsonException
+	 */
+	abstract void literal(String literal);
+
+	/**
+	 * 解析数字，结果保存在{@link #longValue}、{@link #doubleValue}或{@link #bigValue}中
+	 *
+	 * @return {@link #NUMBER_LONG}、{@link #NUMBER_DOUBLE}或{@link #NUMBER_BIG}
+	 * @throws JsonException
+	 */
+	abstract int scanNumber();
+
+	/**
+	 * 当前位置
+	 *
+	 * @return
+	 */
+	int position() {
+		return this.pos;
+	}
+
+	/**
+	 * 消费由{@link #nextNonWhiteSpace()}返回的字符
+	 */
+	void consume() {
+		this.pos++;
+	}
+
+	/**
+	 * @param c
+	 *            字符或Unicode码点
+	 */
+	JsonException jsonException(int c) {
+		return new JsonException("非法的JSON格式字符： "
+				+ (c == EOF ? "EOF" : new String(Character.toChars(c))));
+	}
+
+	/**
+	 * 解析以c开头的值
+	 *
+	 * @param c
+	 * @return
+	 */
+	Object value(int c) {
+		switch (c) {
+		case '"':
+		case '\'':
+			this.pos++;
+			return this.string((char) c);
+		case '{':
+			this.pos++;
+			return this.object();
+		case '[':
+			this.pos++;
+			return this.array();
+		case 't':
+			this.literal("true");
+			return Boolean.TRUE;
+		case 'f':
+			this.literal("false");
+			return Boolean.FALSE;
+		case 'n':
+			this.literal("null");
+			return null;
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			return this.number();
+		default:
+			throw this.jsonException(c);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map object() {
+		Map ret = new HashMap();
+		int c = this.nextNonWhiteSpace();
+
+		if (c == '}') {
+			this.pos++;
+			return ret;
+		}
+
+		while (true) {
+			if (c != '"' && c != '\'') {
+				throw this.jsonException(c);
+			}
+			this.pos++;
+			String key = this.name((char) c);
+
+			c = this.nextNonWhiteSpace();
+			if (c != ':') {
+				throw this.jsonException(c);
+			}
+			this.pos++;
+
+			ret.put(key, this.value(this.nextNonWhiteSpace()));
+
+			c = this.nextNonWhiteSpace();
+			this.pos++;
+			if (c == '}') {
+				return ret;
+			} else if (c != ',') {
+				throw this.jsonException(c);
+			}
+			c = this.nextNonWhiteSpace();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List array() {
+		List ret = new ArrayList();
+		int c = this.nextNonWhiteSpace();
+
+		while (c != ']') {
+			ret.add(this.value(c));
+
+			c = this.nextNonWhiteSpace();
+			if (c == ',') {
+				this.pos++;
+				// 允许末尾多余的逗号
+				c = this.nextNonWhiteSpace();
+			} else if (c != ']') {
+				throw this.jsonException(c);
+			}
+		}
+
+		this.pos++;
+		return ret;
+	}
+
+	/**
+	 * 解析数字并装箱
+	 *
+	 * @return Long、Double、BigInteger或BigDecimal
+	 */
+	Object number() {
+		switch (this.scanNumber()) {
+		case NUMBER_LONG:
+			return Long.valueOf(this.longValue);
+		case NUMBER_DOUBLE:
+			return Double.valueOf(this.doubleValue);
+		default:
+			return this.bigValue;
+		}
+	}
+
+	/**
+	 * 解析以c开头的值并回调handler
+	 *
+	 * @param c
+	 * @param handler
+	 */
+	void handle(int c, JsonHandler handler) {
+		switch (c) {
+		case '"':
+		case '\'':
+			this.pos++;
+			handler.value(this.string((char) c));
+			break;
+		case '{':
+			this.pos++;
+			this.handleObject(handler);
+			break;
+		case '[':
+			this.pos++;
+			this.handleArray(handler);
+			break;
+		case 't':
+			this.literal("true");
+			handler.value(true);
+			break;
+		case 'f':
+			this.literal("false");
+			handler.value(false);
+			break;
+		case 'n':
+			this.literal("null");
+			handler.nullValue();
+			break;
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			switch (this.scanNumber()) {
+			case NUMBER_LONG:
+				handler.value(this.longValue);
+				break;
+			case NUMBER_DOUBLE:
+				handler.value(this.doubleValue);
+				break;
+			default:
+				handler.value(this.bigValue);
+			}
+			break;
+		default:
+			throw this.jsonException(c);
+		}
+	}
+
+	private void handleObject(JsonHandler handler) {
+		handler.startObject();
+		int c = this.nextNonWhiteSpace();
+
+		if (c == '}') {
+			this.pos++;
+			handler.endObject();
+			return;
+		}
+
+		while (true) {
+			if (c != '"' && c != '\'') {
+				throw this.jsonException(c);
+			}
+			this.pos++;
+			handler.key(this.name((char) c));
+
+			c = this.nextNonWhiteSpace();
+			if (c != ':') {
+				throw this.jsonException(c);
+			}
+			this.pos++;
+
+			this.handle(this.nextNonWhiteSpace(), handler);
+
+			c = this.nextNonWhiteSpace();
+			this.pos++;
+			if (c == '}') {
+				handler.endObject();
+				return;
+			} else if (c != ',') {
+				throw this.jsonException(c);
+			}
+			c = this.nextNonWhiteSpace();
+		}
+	}
+
+	private void handleArray(JsonHandler handler) {
+		handler.startArray();
+		int c = this.nextNonWhiteSpace();
+
+		while (c != ']') {
+			this.handle(c, handler);
+
+			c = this.nextNonWhiteSpace();
+			if (c == ',') {
+				this.pos++;
+				// 允许末尾多余的逗号
+				c = this.nextNonWhiteSpace();
+			} else if (c != ']') {
+				throw this.jsonException(c);
+			}
+		}
+
+		this.pos++;
+		handler.endArray();
+	}
+
+	/**
+	 * 解析从当前位置到end之间以逗号分隔的数组元素，用于并行解析数组
+	 * <p>
+	 * end处是切分的逗号或结尾的']'，调用前应一并放入输入，使越界的字面量与串行解析在同一字符处出错
+	 *
+	 * @param end
+	 * @param last
+	 *            是否为数组的最后一段，只有最后一段允许为空或以逗号结尾
+	 * @return
+	 */
+	List<Object> elements(int end, boolean last) {
+		List<Object> ret = new ArrayList<Object>();
+		boolean trailingComma = false;
+		int c = this.nextNonWhiteSpace();
+
+		while (this.pos < end) {
+			ret.add(this.value(c));
+			trailingComma = false;
+
+			c = this.nextNonWhiteSpace();
+			if (this.pos < end) {
+				if (c != ',') {
+					throw this.jsonException(c);
+				}
+				this.pos++;
+				trailingComma = true;
+				c = this.nextNonWhiteSpace();
+			}
+		}
+
+		if (!last && (ret.isEmpty() || trailingComma)) {
+			// 串行解析时会在其后的逗号处出错
+			throw this.jsonException(',');
+		}
+		return ret;
+	}
+}
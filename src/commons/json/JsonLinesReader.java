@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * 并行读取JSON Lines（NDJSON）格式，每行一条记录
+ * <p>
+ * 输入在调用线程上按换行切分为约1M的块，各块在线程池中并行解析。
+ * 同时处理中的块数有上限，内存占用与输入大小无关。空行被忽略。
+ *
+ * <pre>
+ * new JsonLinesReader().read(path, record -&gt; process(record));
+ * </pre>
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public class JsonLinesReader {
+
+	/**
+	 * 每块的初始大小，单行超过时自动扩大
+	 */
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	private final Executor executor;
+
+	/**
+	 * 同时处理中的最大块数
+	 */
+	private final int maxPending;
+
+	/**
+	 * 使用公共的ForkJoinPool
+	 */
+	public JsonLinesReader() {
+		this(ForkJoinPool.commonPool(), ForkJoinPool
+				.getCommonPoolParallelism());
+	}
+
+	/**
+	 * 使用指定的线程池
+	 *
+	 * @param executor
+	 * @param parallelism
+	 *            期望的并行度
+	 */
+	public JsonLinesReader(Executor executor, int parallelism) {
+		this.executor = executor;
+		this.maxPending = Math.max(parallelism, 1) * 2;
+	}
+
+	/**
+	 * 按行的顺序在调用线程上依次回调consumer
+	 *
+	 * @param in
+	 * @param consumer
+	 * @throws JsonException
+	 */
+	public void read(InputStream in, Consumer<Object> consumer) {
+		this.read(in, consumer, true);
+	}
+
+	/**
+	 * 解析完成一块就在工作线程上回调consumer，不保证顺序，consumer需线程安全
+	 *
+	 * @param in
+	 * @param consumer
+	 * @throws JsonException
+	 */
+	public void readUnordered(InputStream in, Consumer<Object> consumer) {
+		this.read(in, consumer, false);
+	}
+
+	/**
+	 * 按行的顺序在调用线程上依次回调consumer
+	 *
+	 * @param path
+	 * @param consumer
+	 * @throws JsonException
+	 */
+	public void read(Path path, Consumer<Object> consumer) {
+		try (InputStream in = Files.newInputStream(path)) {
+			this.read(in, consumer, true);
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * 解析完成一块就在工作线程上回调consumer，不保证顺序，consumer需线程安全
+	 *
+	 * @param path
+	 * @param consumer
+	 * @throws JsonException
+	 */
+	public void readUnordered(Path path, Consumer<Object> consumer) {
+		try (InputStream in = Files.newInputStream(path)) {
+			this.read(in, consumer, false);
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * 按顺序读取全部记录
+	 *
+	 * @param in
+	 * @return
+	 * @throws JsonException
+	 */
+	public List<Object> readAll(InputStream in) {
+		List<Object> ret = new ArrayList<Object>();
+		this.read(in, ret::add, true);
+		return ret;
+	}
+
+	/**
+	 * 按顺序读取全部记录
+	 *
+	 * @param path
+	 * @return
+	 * @throws JsonException
+	 */
+	public List<Object> readAll(Path path) {
+		List<Object> ret = new ArrayList<Object>();
+		this.read(path, ret::add);
+		return ret;
+	}
+
+	private void read(InputStream in, Consumer<Object> consumer,
+			boolean ordered) {
+		Deque<CompletableFuture<List<Object>>> pending = new ArrayDeque<CompletableFuture<List<Object>>>();
+		Chunker chunker = new Chunker(in);
+
+		try {
+			byte[] chunk;
+			while ((chunk = chunker.next()) != null) {
+				final byte[] bytes = chunk;
+				final int length = chunker.length;
+				pending.add(CompletableFuture.supplyAsync(() -> {
+					List<Object> records = parseLines(bytes, length);
+					if (ordered) {
+						return records;
+					}
+					for (Object record : records) {
+						consumer.accept(record);
+					}
+					return Collections.<Object> emptyList();
+				}, this.executor));
+
+				if (pending.size() >= this.maxPending) {
+					deliver(pending.poll(), consumer);
+				}
+			}
+			while (!pending.isEmpty()) {
+				deliver(pending.poll(), consumer);
+			}
+		} finally {
+			for (CompletableFuture<List<Object>> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private static void deliver(CompletableFuture<List<Object>> future,
+			Consumer<Object> consumer) {
+		List<Object> records;
+		try {
+			records = future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new JsonException(cause);
+		}
+		for (Object record : records) {
+			consumer.accept(record);
+		}
+	}
+
+	/**
+	 * 解析一块中的每一行
+	 *
+	 * @param bytes
+	 * @param length
+	 * @return
+	 */
+	static List<Object> parseLines(byte[] bytes, int length) {
+		List<Object> ret = new ArrayList<Object>();
+		JsonByteDeserializer deserializer = new JsonByteDeserializer();
+
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && bytes[end] != '\n') {
+				end++;
+			}
+			if (!isBlank(bytes, start, end)) {
+				ret.add(deserializer.deserialize(bytes, start, end - start));
+			}
+			start = end + 1;
+		}
+		return ret;
+	}
+
+	private static boolean isBlank(byte[] bytes, int start, int end) {
+		for (int i = start; i < end; i++) {
+			byte b = bytes[i];
+			if (b != ' ' && b != '\t' && b != '\r') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 从输入流中按换行切分出块，每块是一个新的数组，交给工作线程后不再修改
+	 */
+	private static class Chunker {
+		private final InputStream in;
+		/**
+		 * 上一块最后一个换行之后的剩余内容
+		 */
+		private byte[] carry = new byte[0];
+		private int carryLength = 0;
+		private boolean eof = false;
+		/**
+		 * 最近一次{@link #next()}返回的块的有效长度
+		 */
+		int length;
+
+		Chunker(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * 读取下一块
+		 *
+		 * @return 没有更多输入时返回null
+		 */
+		byte[] next() {
+			if (this.eof && this.carryLength == 0) {
+				return null;
+			}
+
+			int size = CHUNK_SIZE;
+			while (size < this.carryLength * 2) {
+				size *= 2;
+			}
+			byte[] buf = new byte[size];
+			System.arraycopy(this.carry, 0, buf, 0, this.carryLength);
+			int n = this.carryLength;
+
+			while (true) {
+				n += this.fill(buf, n);
+
+				int lastNewline = n - 1;
+				while (lastNewline >= 0 && buf[lastNewline] != '\n') {
+					lastNewline--;
+				}
+
+				if (lastNewline >= 0 && !this.eof) {
+					this.carryLength = n - lastNewline - 1;
+					if (this.carry.length < this.carryLength) {
+						this.carry = new byte[this.carryLength];
+					}
+					System.arraycopy(buf, lastNewline + 1, this.carry, 0,
+							this.carryLength);
+					this.length = lastNewline + 1;
+					return buf;
+				} else if (this.eof) {
+					this.carryLength = 0;
+					if (n == 0) {
+						return null;
+					}
+					this.length = n;
+					return buf;
+				}
+
+				// 单行超过块大小
+				byte[] larger = new byte[buf.length * 2];
+				System.arraycopy(buf, 0, larger, 0, n);
+				buf = larger;
+			}
+		}
+
+		/**
+		 * 从off开始读满缓冲区或直到输入结束
+		 *
+		 * @return 读取的字节数
+		 */
+		private int fill(byte[] buf, int off) {
+			int total = 0;
+			try {
+				while (off + total < buf.length) {
+					int n = this.in.read(buf, off + total, buf.length - off
+							- total);
+					if (n < 0) {
+						this.eof = true;
+						break;
+					}
+					total += n;
+				}
+			} catch (IOException e) {
+				throw new JsonException(e);
+			}
+			return total;
+		}
+	}
+}
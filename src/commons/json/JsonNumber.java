@@ -137,7 +137,38 @@ public final class JsonNumber implements JsonAware {
 	}
 	
 	public void toString(Appendable sb) throws IOException {
-		sb.append(value.toString());
+		toString(sb, new char[NumberFormatter.MAX_LENGTH]);
+	}
+
+	/**
+	 * @param sb
+	 * @param numberBuffer
+	 *            调用方提供的临时缓冲区，长度不小于{@link NumberFormatter#MAX_LENGTH}
+	 * @throws IOException
+	 */
+	void toString(Appendable sb, char[] numberBuffer) throws IOException {
+		NumberFormatter.append(sb, (Number) value, numberBuffer);
+	}
+
+	/**
+	 * 输出树中的元素，数字和嵌套的对象、数组共用同一个临时缓冲区
+	 * 
+	 * @param element
+	 * @param sb
+	 * @param numberBuffer
+	 * @throws IOException
+	 */
+	static void toString(JsonAware element, Appendable sb, char[] numberBuffer)
+			throws IOException {
+		if (element instanceof JsonNumber) {
+			((JsonNumber) element).toString(sb, numberBuffer);
+		} else if (element instanceof JsonObject) {
+			((JsonObject) element).toString(sb, numberBuffer);
+		} else if (element instanceof JsonArray) {
+			((JsonArray) element).toString(sb, numberBuffer);
+		} else {
+			element.toString(sb);
+		}
 	}
 
 	@Override
@@ -22,25 +22,79 @@ import java.util.Set;
 
 /**
  * Json Object 封装类
+ * <p>
+ * 由{@link Json#deserializeLazy(String)}得到的对象只记录在原始输入中的位置，
+ * 首次访问时才解析直接成员，嵌套的对象和数组仍保持延迟。
  * 
  * @author yuanyan.cao@gmail.com
  * @version 1.0
  */
 public final class JsonObject implements JsonAware {
 
+	private static final JsonString.Escaper BASIC_ESCAPER = new JsonString.Escaper(
+			false);
+
 	private final LinkedHashMap<String, JsonAware> members;
 
+	/**
+	 * 延迟解析的原始输入，已解析或非延迟的对象为null
+	 */
+	private char[] source;
+
+	/**
+	 * 对象在原始输入中的位置，'{'之后
+	 */
+	private int offset;
+
 
 	public JsonObject() {
 		members = new LinkedHashMap<String, JsonAware>();
 	}
 
+	/**
+	 * 实例化延迟解析的对象
+	 * 
+	 * @param source
+	 * @param offset
+	 */
+	JsonObject(char[] source, int offset) {
+		this();
+		this.source = source;
+		this.offset = offset;
+	}
+
+	/**
+	 * 延迟的对象在首次访问时解析直接成员
+	 */
+	private void materialize() {
+		if (source != null) {
+			try {
+				new JsonDeserializer().lazyObject(source, offset, this);
+			} catch (RuntimeException e) {
+				members.clear();
+				throw e;
+			}
+			source = null;
+		}
+	}
+
+	/**
+	 * 解析时添加成员
+	 * 
+	 * @param property
+	 * @param value
+	 */
+	void put(String property, JsonAware value) {
+		members.put(property, value);
+	}
+
 	/**
 	 * 添加属性
 	 * @param property
 	 * @param value
 	 */
 	public void add(String property, JsonAware value) {
+		materialize();
 		if(property == null && "".equals(property.trim()))
 			throw new JsonException("非法参数:"+property);
 
@@ -56,21 +110,25 @@ public final class JsonObject implements JsonAware {
 	 * @return
 	 */
 	public JsonAware remove(String property) {
+		materialize();
 		return members.remove(property);
 	}
 
 
 	public Set<Map.Entry<String, JsonAware>> entrySet() {
+		materialize();
 		return members.entrySet();
 	}
 
 
 	public boolean has(String memberName) {
+		materialize();
 		return members.containsKey(memberName);
 	}
 
 
 	public JsonAware get(String memberName) {
+		materialize();
 		if (members.containsKey(memberName)) {
 			JsonAware member = members.get(memberName);
 			return member == null ? JsonNull.getInstance() : member;
@@ -81,30 +139,40 @@ public final class JsonObject implements JsonAware {
 
 
 	public JsonNumber getAsJsonNumber(String memberName) {
+		materialize();
 		return (JsonNumber) members.get(memberName);
 	}
 
 
 	public JsonString getAsJsonString(String memberName) {
+		materialize();
 		return (JsonString) members.get(memberName);
 	}
 
 
 	public JsonBoolean getAsJsonBoolean(String memberName) {
+		materialize();
 		return (JsonBoolean) members.get(memberName);
 	}
 
 
 	public JsonArray getAsJsonArray(String memberName) {
+		materialize();
 		return (JsonArray) members.get(memberName);
 	}
 
 
 	public JsonObject getAsJsonObject(String memberName) {
+		materialize();
 		return (JsonObject) members.get(memberName);
 	}
 
 	public void toString(Appendable sb) throws IOException {
+		toString(sb, new char[NumberFormatter.MAX_LENGTH]);
+	}
+
+	void toString(Appendable sb, char[] numberBuffer) throws IOException {
+		materialize();
 		sb.append('{');
 		boolean first = true;
 		for (Map.Entry<String, JsonAware> entry : members.entrySet()) {
@@ -113,10 +181,10 @@ public final class JsonObject implements JsonAware {
 			} else {
 				sb.append(',');
 			}
-			sb.append('\"');
-			sb.append(entry.getKey());
+			sb.append('"');
+			BASIC_ESCAPER.escapeJsonString(entry.getKey(), sb);
 			sb.append("\":");
-			entry.getValue().toString(sb);
+			JsonNumber.toString(entry.getValue(), sb, numberBuffer);
 		}
 		sb.append('}');
 	}
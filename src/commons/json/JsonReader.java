@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 拉取式读取器，按需逐个读取标记，不构建中间的Map和List
+ *
+ * <pre>
+ * JsonReader reader = new JsonReader(json);
+ * reader.nextToken(); // BEGIN_OBJECT
+ * while (reader.hasNext()) {
+ * 	if (&quot;id&quot;.equals(reader.nextName())) {
+ * 		id = reader.nextLong();
+ * 	} else {
+ * 		reader.skipValue();
+ * 	}
+ * }
+ * reader.nextToken(); // END_OBJECT
+ * </pre>
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public class JsonReader implements Closeable {
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	/**
+	 * 词法解析
+	 */
+	private final JsonDeserializer lexer = new JsonDeserializer();
+
+	/**
+	 * 输入源，从字符串读取时为null
+	 */
+	private final Reader reader;
+
+	/**
+	 * 嵌套作用域栈
+	 */
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+
+	/**
+	 * 已预读但未消费的标记
+	 */
+	private JsonToken peeked;
+
+	/**
+	 * 已预读标记的首字符
+	 */
+	private int peekedChar;
+
+	/**
+	 * 当前标记的值
+	 */
+	private String stringValue;
+	private long longValue;
+	private double doubleValue;
+	private Number bigValue;
+	private int numberType;
+	private boolean booleanValue;
+
+	/**
+	 * 从字符串读取
+	 *
+	 * @param json
+	 */
+	public JsonReader(String json) {
+		this.reader = null;
+		this.lexer.reset(json);
+		push(EMPTY_DOCUMENT);
+	}
+
+	/**
+	 * 从Reader读取
+	 *
+	 * @param reader
+	 */
+	public JsonReader(Reader reader) {
+		this.reader = reader;
+		this.lexer.reset(reader);
+		push(EMPTY_DOCUMENT);
+	}
+
+	/**
+	 * 预读下一个标记的类型，不消费
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public JsonToken peek() {
+		if (peeked != null) {
+			return peeked;
+		}
+
+		int c;
+		switch (stack[stackSize - 1]) {
+		case EMPTY_ARRAY:
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			c = lexer.nextNonWhiteSpace();
+			if (c == ']') {
+				return peeked = JsonToken.END_ARRAY;
+			}
+			break;
+
+		case NONEMPTY_ARRAY:
+			c = lexer.nextNonWhiteSpace();
+			if (c == ',') {
+				lexer.consume();
+				c = lexer.nextNonWhiteSpace();
+			} else if (c != ']') {
+				throw lexer.jsonException(c);
+			}
+			// 允许末尾多余的逗号
+			if (c == ']') {
+				return peeked = JsonToken.END_ARRAY;
+			}
+			break;
+
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			c = lexer.nextNonWhiteSpace();
+			if (c == '}') {
+				return peeked = JsonToken.END_OBJECT;
+			}
+			if (stack[stackSize - 1] == NONEMPTY_OBJECT) {
+				if (c != ',') {
+					throw lexer.jsonException(c);
+				}
+				lexer.consume();
+				c = lexer.nextNonWhiteSpace();
+			}
+			if (c != '"' && c != '\'') {
+				throw lexer.jsonException(c);
+			}
+			stack[stackSize - 1] = DANGLING_NAME;
+			peekedChar = c;
+			return peeked = JsonToken.NAME;
+
+		case DANGLING_NAME:
+			c = lexer.nextNonWhiteSpace();
+			if (c != ':') {
+				throw lexer.jsonException(c);
+			}
+			lexer.consume();
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			c = lexer.nextNonWhiteSpace();
+			break;
+
+		case EMPTY_DOCUMENT:
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+			c = lexer.nextNonWhiteSpace();
+			break;
+
+		default:
+			// 顶层允许多个连续的值
+			c = lexer.nextNonWhiteSpace();
+			if (c == JsonLexer.EOF) {
+				return peeked = JsonToken.END_DOCUMENT;
+			}
+		}
+
+		peekedChar = c;
+		return peeked = valueToken(c);
+	}
+
+	private JsonToken valueToken(int c) {
+		switch (c) {
+		case '"':
+		case '\'':
+			return JsonToken.STRING;
+		case '{':
+			return JsonToken.BEGIN_OBJECT;
+		case '[':
+			return JsonToken.BEGIN_ARRAY;
+		case 't':
+		case 'f':
+			return JsonToken.BOOLEAN;
+		case 'n':
+			return JsonToken.NULL;
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			return JsonToken.NUMBER;
+		default:
+			throw lexer.jsonException(c);
+		}
+	}
+
+	/**
+	 * 消费下一个标记并返回其类型，值可通过{@link #getString()}、{@link #getLong()}等获取
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public JsonToken nextToken() {
+		JsonToken token = peek();
+		peeked = null;
+
+		switch (token) {
+		case BEGIN_OBJECT:
+			lexer.consume();
+			push(EMPTY_OBJECT);
+			break;
+		case BEGIN_ARRAY:
+			lexer.consume();
+			push(EMPTY_ARRAY);
+			break;
+		case END_OBJECT:
+		case END_ARRAY:
+			lexer.consume();
+			stackSize--;
+			break;
+		case NAME:
+			lexer.consume();
+			stringValue = lexer.name((char) peekedChar);
+			break;
+		case STRING:
+			lexer.consume();
+			stringValue = lexer.string((char) peekedChar);
+			break;
+		case NUMBER:
+			numberType = lexer.scanNumber();
+			longValue = lexer.longValue;
+			doubleValue = lexer.doubleValue;
+			bigValue = lexer.bigValue;
+			break;
+		case BOOLEAN:
+			booleanValue = peekedChar == 't';
+			lexer.literal(booleanValue ? "true" : "false");
+			break;
+		case NULL:
+			lexer.literal("null");
+			break;
+		default:
+			break;
+		}
+
+		return token;
+	}
+
+	/**
+	 * 当前对象或数组中是否还有元素
+	 *
+	 * @return
+	 */
+	public boolean hasNext() {
+		JsonToken token = peek();
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY
+				&& token != JsonToken.END_DOCUMENT;
+	}
+
+	/**
+	 * 进入对象
+	 *
+	 * @throws JsonException
+	 */
+	public void beginObject() {
+		expect(JsonToken.BEGIN_OBJECT);
+	}
+
+	/**
+	 * 离开对象，对象中的元素须已读完
+	 *
+	 * @throws JsonException
+	 */
+	public void endObject() {
+		expect(JsonToken.END_OBJECT);
+	}
+
+	/**
+	 * 进入数组
+	 *
+	 * @throws JsonException
+	 */
+	public void beginArray() {
+		expect(JsonToken.BEGIN_ARRAY);
+	}
+
+	/**
+	 * 离开数组，数组中的元素须已读完
+	 *
+	 * @throws JsonException
+	 */
+	public void endArray() {
+		expect(JsonToken.END_ARRAY);
+	}
+
+	/**
+	 * 读取属性名
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public String nextName() {
+		expect(JsonToken.NAME);
+		return stringValue;
+	}
+
+	/**
+	 * 读取字符串值
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public String nextString() {
+		expect(JsonToken.STRING);
+		return stringValue;
+	}
+
+	/**
+	 * 读取整数值，浮点数必须能无损转换
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public long nextLong() {
+		expect(JsonToken.NUMBER);
+		return getLong();
+	}
+
+	/**
+	 * 读取int值
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public int nextInt() {
+		long value = nextLong();
+		if ((int) value != value) {
+			throw new JsonException("数值超出int范围:" + value);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * 读取浮点数值
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public double nextDouble() {
+		expect(JsonToken.NUMBER);
+		return getDouble();
+	}
+
+	/**
+	 * 读取数字，整数为Long，浮点数为Double，超出范围时为BigInteger或BigDecimal，与{@link Json#deserialize(String)}一致
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public Number nextNumber() {
+		expect(JsonToken.NUMBER);
+		switch (numberType) {
+		case JsonLexer.NUMBER_LONG:
+			return Long.valueOf(longValue);
+		case JsonLexer.NUMBER_DOUBLE:
+			return Double.valueOf(doubleValue);
+		default:
+			return bigValue;
+		}
+	}
+
+	/**
+	 * 读取布尔值
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public boolean nextBoolean() {
+		expect(JsonToken.BOOLEAN);
+		return booleanValue;
+	}
+
+	/**
+	 * 读取null值
+	 *
+	 * @throws JsonException
+	 */
+	public void nextNull() {
+		expect(JsonToken.NULL);
+	}
+
+	/**
+	 * 跳过下一个值及其所有子元素，字符串不会被构建但格式与读取时一样被检查；下一个标记为属性名时连同其值一起跳过
+	 *
+	 * @throws JsonException
+	 */
+	public void skipValue() {
+		int depth = 0;
+		do {
+			JsonToken token = peek();
+			switch (token) {
+			case BEGIN_OBJECT:
+			case BEGIN_ARRAY:
+				depth++;
+				nextToken();
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				if (depth == 0) {
+					throw new JsonException("没有可跳过的值:" + token);
+				}
+				depth--;
+				nextToken();
+				break;
+			case NAME:
+				peeked = null;
+				lexer.consume();
+				lexer.skipString((char) peekedChar);
+				// 属性名之后继续跳过其值
+				skipValue();
+				break;
+			case STRING:
+				peeked = null;
+				lexer.consume();
+				lexer.skipString((char) peekedChar);
+				break;
+			case NUMBER:
+				// 与读取数字一样检查格式，通常不创建对象
+				peeked = null;
+				lexer.scanNumber();
+				break;
+			case END_DOCUMENT:
+				throw new JsonException("没有可跳过的值:" + token);
+			default:
+				nextToken();
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * 当前标记的字符串值，适用于NAME、STRING
+	 *
+	 * @return
+	 */
+	public String getString() {
+		return stringValue;
+	}
+
+	/**
+	 * 当前数字标记的整数值
+	 *
+	 * @return
+	 * @throws JsonException
+	 */
+	public long getLong() {
+		if (numberType == JsonLexer.NUMBER_LONG) {
+			return longValue;
+		} else if (numberType == JsonLexer.NUMBER_BIG) {
+			throw new JsonException("数值超出long范围:" + bigValue);
+		}
+		// 强制转换会把超出范围的值截断为Long.MAX_VALUE或Long.MIN_VALUE
+		if (doubleValue >= 0x1p63 || doubleValue < -0x1p63) {
+			throw new JsonException("数值超出long范围:" + doubleValue);
+		}
+		long value = (long) doubleValue;
+		if (value != doubleValue) {
+			throw new JsonException("不是整数:" + doubleValue);
+		}
+		return value;
+	}
+
+	/**
+	 * 当前数字标记的浮点数值
+	 *
+	 * @return
+	 */
+	public double getDouble() {
+		switch (numberType) {
+		case JsonLexer.NUMBER_LONG:
+			return longValue;
+		case JsonLexer.NUMBER_DOUBLE:
+			return doubleValue;
+		default:
+			return bigValue.doubleValue();
+		}
+	}
+
+	/**
+	 * 当前布尔标记的值
+	 *
+	 * @return
+	 */
+	public boolean getBoolean() {
+		return booleanValue;
+	}
+
+	/**
+	 * 关闭输入源
+	 */
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	private void expect(JsonToken expected) {
+		JsonToken token = peek();
+		if (token != expected) {
+			throw new JsonException("期望" + expected + "，实际为" + token);
+		}
+		nextToken();
+	}
+
+	private void push(int scope) {
+		if (stackSize == stack.length) {
+			int[] newStack = new int[stackSize * 2];
+			System.arraycopy(stack, 0, newStack, 0, stackSize);
+			stack = newStack;
+		}
+		stack[stackSize++] = scope;
+	}
+}
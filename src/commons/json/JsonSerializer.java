@@ -17,7 +17,6 @@ package commons.json;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.Set;
 
@@ -33,6 +32,11 @@ public class JsonSerializer {
 	 */
 	private final Appendable writer;
 
+	/**
+	 * 流式输出器
+	 */
+	private final JsonWriter jsonWriter;
+
 	/**
 	 * 是否序列化Null值
 	 */
@@ -44,36 +48,9 @@ public class JsonSerializer {
 	private final boolean ignoreHierarchy;
 
 	/**
-	 * 映射为JsonString的Java类型
-	 */
-	private Class<?>[] stringTypes = { String.class, char.class,
-			Character.class, Enum.class, java.util.Date.class,
-			java.sql.Date.class };
-	/**
-	 * 映射为JsonNumber的Java类型
+	 * 编解码器注册表
 	 */
-	private Class<?>[] numberTypes = { int.class, long.class, short.class,
-			float.class, double.class, byte.class, Integer.class, Long.class,
-			Short.class, Float.class, Double.class, Byte.class };
-	/**
-	 * 映射为JsonArray的Java类型
-	 */
-	private Class<?>[] arrayTypes = { Iterable.class };
-
-	/**
-	 * 映射为JsonObject的Java类型
-	 */
-	private Class<?>[] objectTypes = { Map.class };
-
-	/**
-	 * 映射为JsonNull的Java类型
-	 */
-	private Class<?>[] nullTypes = {};
-
-	/**
-	 * 映射为JsonBoolean的Java类型
-	 */
-	private Class<?>[] booleanTypes = {};
+	private CodecRegistry registry;
 
 	/**
 	 * 序列化器
@@ -83,12 +60,14 @@ public class JsonSerializer {
 	 */
 	public JsonSerializer(Appendable writer, boolean serializeNulls) {
 		this.writer = writer;
+		this.jsonWriter = new JsonWriter(writer);
 		this.serializeNulls = serializeNulls;
 		this.ignoreHierarchy = true;
+		this.registry = CodecRegistry.getDefault();
 	}
 
 	/**
-	 * 序列化映射类型注册
+	 * 序列化映射类型注册，仅对当前序列化器生效
 	 * 
 	 * @param src
 	 * @param target
@@ -96,19 +75,31 @@ public class JsonSerializer {
 	 * @return
 	 */
 	void typeMappingRegister(Class<?> src, Class<? extends JsonAware> target) {
+		codecRegister(src, BuiltinCodec.forTarget(src, target));
+	}
 
-		if (target == JsonString.class) {
-
-		} else if (target == JsonArray.class) {
-
-		} else if (target == JsonObject.class) {
-
-		} else if (target == JsonBoolean.class) {
-
-		} else if (target == JsonNull.class) {
-
+	/**
+	 * 编解码器注册，仅对当前序列化器生效
+	 * 
+	 * @param src
+	 * @param codec
+	 */
+	<T> void codecRegister(Class<T> src, JsonCodec<? super T> codec) {
+		if (registry == CodecRegistry.getDefault()) {
+			registry = new CodecRegistry(registry);
 		}
+		registry.register(src, codec);
+	}
 
+	/**
+	 * 查找对象对应的编解码器
+	 * 
+	 * @param src
+	 *            非null对象
+	 * @return
+	 */
+	private JsonCodec<Object> codecOf(Object src) {
+		return registry.lookup(src.getClass());
 	}
 
 	/**
@@ -119,23 +110,32 @@ public class JsonSerializer {
 	 */
 	JsonAware typeMapping(Object src) {
 
-		if (isMapJsonNull(src)) {
+		if (src == null) {
+			return jsonNullMapping(src);
+		}
+
+		JsonCodec<Object> codec = codecOf(src);
+
+		if (codec == BuiltinCodec.NULL) {
 			return jsonNullMapping(src);
 
-		} else if (isMapJsonBoolean(src)) {
+		} else if (codec == BuiltinCodec.BOOLEAN) {
 			return jsonBooleanMapping(src);
 
-		} else if (isMapJsonString(src)) {
+		} else if (codec == BuiltinCodec.STRING) {
 			return jsonStringMapping(src);
 
-		} else if (isMapJsonNumber(src)) {
+		} else if (codec == BuiltinCodec.NUMBER) {
 			return jsonNumberMapping(src);
 
-		} else if (isMapJsonArray(src)) {
+		} else if (codec == BuiltinCodec.ARRAY) {
 			return jsonArrayMapping(src);
+
+		} else if (codec == BuiltinCodec.MAP || codec == BuiltinCodec.BEAN) {
+			return jsonObjectMapping(src);
 		}
 
-		return jsonObjectMapping(src);
+		return new CodecElement(codec, src);
 	}
 
 	/**
@@ -169,21 +169,9 @@ public class JsonSerializer {
 			return target;
 		}
 
-		Field[] fields = Reflector.getFields(src);
-
-		for (Field field : fields) {
-			Object value = null;
-			String property = field.getName();
-
-			field.getType();
-
-			try {
-				value = Reflector.getFieldValue(field, src, true);
-			} catch (IllegalAccessException e) {
-				e.printStackTrace();
-			}
-
-			target.add(property, typeMapping(value));
+		for (Reflector.Property property : Reflector.getProperties(src
+				.getClass())) {
+			target.add(property.name, typeMapping(property.get(src)));
 		}
 
 		return target;
@@ -242,7 +230,7 @@ public class JsonSerializer {
 			return serializeNulls ? JsonNull.getInstance() : null;
 		}
 
-		JsonNumber target = new JsonNumber(src);
+		JsonNumber target = new JsonNumber(BuiltinCodec.toNumber(src));
 
 		return target;
 
@@ -277,7 +265,7 @@ public class JsonSerializer {
 			return serializeNulls ? JsonNull.getInstance() : null;
 		}
 
-		JsonBoolean target = ((Boolean) src) ? JsonBoolean.getTrueInstance()
+		JsonBoolean target = BuiltinCodec.toBoolean(src) ? JsonBoolean.getTrueInstance()
 				: JsonBoolean.getFalseInstance();
 
 		return target;
@@ -307,17 +295,7 @@ public class JsonSerializer {
 	 * @return
 	 */
 	public boolean isMapJsonString(Object src) {
-		if (src instanceof String) {
-			return true;
-		}
-
-		Class<?> srcType = src.getClass();
-		for (Class<?> stringType : stringTypes) {
-			if (stringType.isAssignableFrom(srcType)) {
-				return true;
-			}
-		}
-		return false;
+		return codecOf(src) == BuiltinCodec.STRING;
 	}
 
 	/**
@@ -327,14 +305,7 @@ public class JsonSerializer {
 	 * @return
 	 */
 	public boolean isMapJsonNumber(Object src) {
-
-		Class<?> srcType = src.getClass();
-		for (Class<?> numberType : numberTypes) {
-			if (numberType.isAssignableFrom(srcType)) {
-				return true;
-			}
-		}
-		return false;
+		return codecOf(src) == BuiltinCodec.NUMBER;
 	}
 
 	/**
@@ -344,18 +315,7 @@ public class JsonSerializer {
 	 * @return
 	 */
 	public boolean isMapJsonBoolean(Object src) {
-		if (src instanceof Boolean) {
-			return true;
-		}
-
-		Class<?> srcType = src.getClass();
-		for (Class<?> booleanType : booleanTypes) {
-			if (booleanType.isAssignableFrom(srcType)) {
-				return true;
-			}
-		}
-
-		return false;
+		return codecOf(src) == BuiltinCodec.BOOLEAN;
 	}
 
 	/**
@@ -365,17 +325,7 @@ public class JsonSerializer {
 	 * @return
 	 */
 	public boolean isMapJsonNull(Object src) {
-		if (src == null) {
-			return true;
-		}
-		
-		Class<?> srcType = src.getClass();
-		for (Class<?> nullType : nullTypes) {
-			if (nullType.isAssignableFrom(srcType)) {
-				return true;
-			}
-		}
-		return false;
+		return src == null || codecOf(src) == BuiltinCodec.NULL;
 	}
 
 	/**
@@ -385,53 +335,233 @@ public class JsonSerializer {
 	 * @return
 	 */
 	public boolean isMapJsonArray(Object src) {
-		if (src.getClass().isArray()) {
-			return true;
+		return codecOf(src) == BuiltinCodec.ARRAY;
+	}
+
+	/**
+	 * 是否匹配JsonObject映射
+	 * 
+	 * @param src
+	 * @return
+	 */
+	public boolean isMapJsonObject(Object src) {
+		return codecOf(src) == BuiltinCodec.MAP;
+	}
+
+	/**
+	 * 流式写入，直接遍历Java对象并输出，不构建{@link JsonAware}树
+	 * 
+	 * @param src
+	 * @throws IOException
+	 */
+	public void write(Object src) throws IOException {
+		if (src == null) {
+			jsonWriter.writeNull();
+			return;
 		}
+		codecOf(src).write(src, jsonWriter, this);
+	}
 
-		Class<?> srcType = src.getClass();
-		for (Class<?> arrayType : arrayTypes) {
-			if (arrayType.isAssignableFrom(srcType)) {
-				return true;
+	/**
+	 * 流式写入Map
+	 * 
+	 * @param src
+	 * @throws IOException
+	 */
+	void writeMap(Object src) throws IOException {
+		jsonWriter.write('{');
+		boolean first = true;
+
+		for (Map.Entry entry : (Set<Map.Entry>) ((Map) src).entrySet()) {
+			if (first) {
+				first = false;
+			} else {
+				jsonWriter.write(',');
 			}
+			jsonWriter.writeName(String.valueOf(entry.getKey()));
+			write(entry.getValue());
 		}
-		return false;
+
+		jsonWriter.write('}');
 	}
 
 	/**
-	 * 是否匹配JsonObject映射
+	 * 流式写入普通Java对象
 	 * 
 	 * @param src
-	 * @return
+	 * @throws IOException
 	 */
-	public boolean isMapJsonObject(Object src) {
+	void writeBean(Object src) throws IOException {
+		if (SerializerGenerator.isEnabled()) {
+			JsonCodec<Object> generated = SerializerGenerator.codecFor(src
+					.getClass());
+			if (generated != null) {
+				generated.write(src, jsonWriter, this);
+				return;
+			}
+		}
+
+		jsonWriter.write('{');
+		boolean first = true;
 
-		Class<?> srcType = src.getClass();
-		for (Class<?> objectType : objectTypes) {
-			if (objectType.isAssignableFrom(srcType)) {
-				return true;
+		for (Reflector.Property property : Reflector.getProperties(src
+				.getClass())) {
+			if (first) {
+				first = false;
+			} else {
+				jsonWriter.write(',');
+			}
+			jsonWriter.writeName(property);
+
+			// 基本类型字段直接读取，不做装箱
+			switch (property.kind) {
+			case Reflector.INT:
+				jsonWriter.writeNumber(property.getInt(src));
+				break;
+			case Reflector.LONG:
+				jsonWriter.writeNumber(property.getLong(src));
+				break;
+			case Reflector.FLOAT:
+				jsonWriter.writeNumber(property.getFloat(src));
+				break;
+			case Reflector.DOUBLE:
+				jsonWriter.writeNumber(property.getDouble(src));
+				break;
+			case Reflector.BOOLEAN:
+				jsonWriter.writeBoolean(property.getBoolean(src));
+				break;
+			case Reflector.CHAR:
+				jsonWriter.writeString(String.valueOf(property.getChar(src)));
+				break;
+			default:
+				write(property.get(src));
 			}
 		}
 
-		/*
-		 * if (src instanceof Class) { return true; }
-		 */
+		jsonWriter.write('}');
+	}
 
-		return false;
+	/**
+	 * 流式写入数组，基本类型数组不做装箱
+	 * 
+	 * @param src
+	 * @throws IOException
+	 */
+	void writeArray(Object src) throws IOException {
+		jsonWriter.write('[');
+
+		if (src instanceof int[]) {
+			int[] array = (int[]) src;
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0) {
+					jsonWriter.write(',');
+				}
+				jsonWriter.writeNumber(array[i]);
+			}
+		} else if (src instanceof long[]) {
+			long[] array = (long[]) src;
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0) {
+					jsonWriter.write(',');
+				}
+				jsonWriter.writeNumber(array[i]);
+			}
+		} else if (src instanceof double[]) {
+			double[] array = (double[]) src;
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0) {
+					jsonWriter.write(',');
+				}
+				jsonWriter.writeNumber(array[i]);
+			}
+		} else if (src instanceof Object[]) {
+			Object[] array = (Object[]) src;
+			for (int i = 0; i < array.length; i++) {
+				if (i > 0) {
+					jsonWriter.write(',');
+				}
+				write(array[i]);
+			}
+		} else if (src.getClass().isArray()) {
+			// 其余基本类型数组
+			for (int i = 0; i < Array.getLength(src); i++) {
+				if (i > 0) {
+					jsonWriter.write(',');
+				}
+				write(Array.get(src, i));
+			}
+		} else {
+			boolean first = true;
+			for (Object element : (Iterable) src) {
+				if (first) {
+					first = false;
+				} else {
+					jsonWriter.write(',');
+				}
+				write(element);
+			}
+		}
+
+		jsonWriter.write(']');
 	}
 
 	/**
-	 * 对象序列化
+	 * 流式写入字符串
+	 * 
+	 * @param src
+	 * @throws IOException
+	 */
+	void writeString(Object src) throws IOException {
+		if (src instanceof Character) {
+			jsonWriter.writeString(String.valueOf(((Character) src).charValue()));
+		} else if (src instanceof CharSequence) {
+			jsonWriter.writeString((CharSequence) src);
+		} else {
+			jsonWriter.writeString(src.toString());
+		}
+	}
+
+	/**
+	 * 转换为{@link JsonAware}树，供需要操作树结构的调用方使用
+	 * 
+	 * @param src
+	 * @return
+	 */
+	public JsonAware toJsonTree(Object src) {
+		JsonAware tree = typeMapping(src);
+		return tree == null ? JsonNull.getInstance() : tree;
+	}
+
+	/**
+	 * 对象序列化，以流式方式直接写入输出载体
 	 * 
 	 * @param src
 	 */
 	public void serialize(Object src) {
 
 		try {
-			typeMapping(src).toString(writer);
+			write(src);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			throw new JsonException(e);
+		}
+	}
+
+	/**
+	 * 用户编解码器对应的Json元素，输出时委托给编解码器
+	 */
+	private final class CodecElement implements JsonAware {
+		private final JsonCodec<Object> codec;
+		private final Object value;
+
+		CodecElement(JsonCodec<Object> codec, Object value) {
+			this.codec = codec;
+			this.value = value;
+		}
+
+		public void toString(Appendable sb) throws IOException {
+			JsonSerializer serializer = new JsonSerializer(sb, serializeNulls);
+			serializer.registry = registry;
+			codec.write(value, serializer.jsonWriter, serializer);
 		}
 	}
 
@@ -16,9 +16,7 @@
 package commons.json;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.Writer;
 
 /**
  * Json String 封装类
@@ -46,6 +44,14 @@ public final class JsonString implements JsonAware {
 		setValue(c);
 	}
 
+	/**
+	 * 
+	 * @return String
+	 */
+	public String getAsString() {
+		return value.toString();
+	}
+
 	void setValue(Object string) {
 		if (string instanceof Character) {
 
@@ -58,7 +64,7 @@ public final class JsonString implements JsonAware {
 
 	public void toString(Appendable sb) throws IOException {
 		sb.append('"');
-		sb.append(BASIC_ESCAPER.escapeJsonString(value.toString()));
+		BASIC_ESCAPER.escapeJsonString(value.toString(), sb);
 		sb.append('"');
 	}
 
@@ -88,7 +94,7 @@ public final class JsonString implements JsonAware {
 	}
 
 	/**
-	 * 特殊字符转义类
+	 * 特殊字符转义类，ASCII字符查表判断，无需转义的片段整段写入输出载体
 	 * 
 	 */
 	static class Escaper {
@@ -96,124 +102,148 @@ public final class JsonString implements JsonAware {
 		private static final char[] HEX_CHARS = { '0', '1', '2', '3', '4', '5',
 				'6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
 
-		private static final Set<Character> JS_ESCAPE_CHARS;
-		private static final Set<Character> HTML_ESCAPE_CHARS;
+		/**
+		 * HTML模式下额外转义的字符
+		 */
+		// '/' 斜杠可能有兼容性问题
+		static final String HTML_ESCAPE_CHARS = "<>&='";
+
+		/**
+		 * ASCII字符的默认转义表，null表示不需转义
+		 */
+		private static final String[] JS_ESCAPES = new String[128];
+
+		/**
+		 * 0x80-0x9f控制字符的转义
+		 */
+		private static final String[] C1_ESCAPES = new String[0x20];
+
+		private static final String LINE_SEPARATOR_ESCAPE = unicodeEscape(0x2028);
+
+		private static final String PARAGRAPH_SEPARATOR_ESCAPE = unicodeEscape(0x2029);
 
 		static {
-			Set<Character> mandatoryEscapeSet = new HashSet<Character>();
-			mandatoryEscapeSet.add('"');
-			mandatoryEscapeSet.add('\\');
-			JS_ESCAPE_CHARS = Collections.unmodifiableSet(mandatoryEscapeSet);
-
-			Set<Character> htmlEscapeSet = new HashSet<Character>();
-			htmlEscapeSet.add('<');
-			htmlEscapeSet.add('>');
-			htmlEscapeSet.add('&');
-			htmlEscapeSet.add('=');
-			htmlEscapeSet.add('\'');
-			
-			// htmlEscapeSet.add('/'); 斜杠可能有兼容性问题
-			
-			HTML_ESCAPE_CHARS = Collections.unmodifiableSet(htmlEscapeSet);
+			for (int c = 0; c < 0x20; c++) {
+				JS_ESCAPES[c] = unicodeEscape(c);
+			}
+			JS_ESCAPES['\b'] = "\\b";
+			JS_ESCAPES['\t'] = "\\t";
+			JS_ESCAPES['\n'] = "\\n";
+			JS_ESCAPES['\f'] = "\\f";
+			JS_ESCAPES['\r'] = "\\r";
+			JS_ESCAPES['"'] = "\\\"";
+			JS_ESCAPES['\\'] = "\\\\";
+			JS_ESCAPES[0x7f] = unicodeEscape(0x7f);
+
+			for (int c = 0; c < C1_ESCAPES.length; c++) {
+				C1_ESCAPES[c] = unicodeEscape(0x80 + c);
+			}
 		}
 
-		private final boolean escapeHtmlCharacters;
+		/**
+		 * 本实例使用的ASCII转义表
+		 */
+		private final String[] escapes;
 
 		Escaper(boolean escapeHtmlCharacters) {
-			this.escapeHtmlCharacters = escapeHtmlCharacters;
+			this(escapeHtmlCharacters ? HTML_ESCAPE_CHARS : "");
 		}
 
-		public String escapeJsonString(CharSequence plainText) {
-			StringBuffer escapedString = new StringBuffer(
-					plainText.length() + 20);
-			try {
-				escapeJsonString(plainText, escapedString);
-			} catch (IOException e) {
-				throw new JsonException(e);
+		/**
+		 * @param extraChars
+		 *            在默认转义表之外以\\uXXXX形式转义的ASCII字符
+		 */
+		Escaper(String extraChars) {
+			this.escapes = JS_ESCAPES.clone();
+			for (int i = 0; i < extraChars.length(); i++) {
+				char c = extraChars.charAt(i);
+				if (c >= 128) {
+					throw new IllegalArgumentException("not an ASCII char: " + c);
+				}
+				if (this.escapes[c] == null) {
+					this.escapes[c] = unicodeEscape(c);
+				}
 			}
-			return escapedString.toString();
 		}
 
-		private void escapeJsonString(CharSequence plainText, StringBuffer out)
+		/**
+		 * 转义plainText并写入out，不带引号
+		 * 
+		 * @param plainText
+		 * @param out
+		 * @throws IOException
+		 */
+		public void escapeJsonString(CharSequence plainText, Appendable out)
 				throws IOException {
-			int pos = 0; 
 			int len = plainText.length();
+			int i = indexOfEscape(plainText, 0, len);
+			if (i == len) {
+				out.append(plainText);
+				return;
+			}
 
-			for (int charCount, i = 0; i < len; i += charCount) {
-				int codePoint = Character.codePointAt(plainText, i);
-				charCount = Character.charCount(codePoint);
-
-				if (!isControlCharacter(codePoint)
-						&& !mustEscapeCharInJsString(codePoint)) {
-					continue;
+			int pos = 0;
+			do {
+				if (i > pos) {
+					append(out, plainText, pos, i);
 				}
+				out.append(escape(plainText.charAt(i)));
+				pos = ++i;
+				i = indexOfEscape(plainText, i, len);
+			} while (i < len);
 
-				out.append(plainText, pos, i);
-				pos = i + charCount;
-				switch (codePoint) {
-				case '\b':
-					out.append("\\b");
-					break;
-				case '\t':
-					out.append("\\t");
-					break;
-				case '\n':
-					out.append("\\n");
-					break;
-				case '\f':
-					out.append("\\f");
-					break;
-				case '\r':
-					out.append("\\r");
-					break;
-				case '\\':
-					out.append("\\\\");
-					break;
-				case '/':
-					out.append("\\/");
-					break;
-				case '"':
-					out.append("\\\"");
-					break;
-				default:
-					appendHexJavaScriptRepresentation(codePoint, out);
-					break;
-				}
+			if (pos < len) {
+				append(out, plainText, pos, len);
 			}
-			out.append(plainText, pos, len);
 		}
 
-		private boolean mustEscapeCharInJsString(int codepoint) {
-			if (!Character.isSupplementaryCodePoint(codepoint)) {
-				char c = (char) codepoint;
-				return JS_ESCAPE_CHARS.contains(c)
-						|| (escapeHtmlCharacters && HTML_ESCAPE_CHARS
-								.contains(c));
-			} else {
-				return false;
+		/**
+		 * 从from开始查找第一个需要转义的字符
+		 * 
+		 * @return 找不到时返回len
+		 */
+		private int indexOfEscape(CharSequence text, int from, int len) {
+			String[] escapes = this.escapes;
+			for (int i = from; i < len; i++) {
+				char c = text.charAt(i);
+				if (c < 128) {
+					if (escapes[c] != null) {
+						return i;
+					}
+				} else if (c <= 0x9f || c == 0x2028 || c == 0x2029) {
+					return i;
+				}
 			}
+			return len;
 		}
 
-		private static boolean isControlCharacter(int codePoint) {
-
-			return codePoint < 0x20 || codePoint == 0x2028 // 行分隔符
-					|| codePoint == 0x2029 // 段分隔符
-					|| (codePoint >= 0x7f && codePoint <= 0x9f);
+		private String escape(char c) {
+			if (c < 128) {
+				return this.escapes[c];
+			} else if (c == 0x2028) {
+				return LINE_SEPARATOR_ESCAPE;
+			} else if (c == 0x2029) {
+				return PARAGRAPH_SEPARATOR_ESCAPE;
+			}
+			return C1_ESCAPES[c - 0x80];
 		}
 
-		private static void appendHexJavaScriptRepresentation(int codePoint,
-				Appendable out) throws IOException {
-			if (Character.isSupplementaryCodePoint(codePoint)) {
-				
-				char[] surrogates = Character.toChars(codePoint);
-				appendHexJavaScriptRepresentation(surrogates[0], out);
-				appendHexJavaScriptRepresentation(surrogates[1], out);
-				return;
+		/**
+		 * 将text的[start, end)写入out，常见的载体不经过中间对象
+		 */
+		private static void append(Appendable out, CharSequence text,
+				int start, int end) throws IOException {
+			if (out instanceof Writer && text instanceof String) {
+				((Writer) out).write((String) text, start, end - start);
+			} else {
+				out.append(text, start, end);
 			}
-			out.append("\\u").append(HEX_CHARS[(codePoint >>> 12) & 0xf])
-					.append(HEX_CHARS[(codePoint >>> 8) & 0xf]).append(
-							HEX_CHARS[(codePoint >>> 4) & 0xf]).append(
-							HEX_CHARS[codePoint & 0xf]);
+		}
+
+		private static String unicodeEscape(int c) {
+			return new String(new char[] { '\\', 'u',
+					HEX_CHARS[(c >>> 12) & 0xf], HEX_CHARS[(c >>> 8) & 0xf],
+					HEX_CHARS[(c >>> 4) & 0xf], HEX_CHARS[c & 0xf] });
 		}
 	}
 
@@ -0,0 +1,653 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结构化磁带，整个文档一次解析为一个long[]，不构建Map、List等节点对象
+ * <p>
+ * 每项高8位为类型，低56位为附加信息：
+ * <ul>
+ * <li>对象和数组的开始项记录元素个数和对应结束项之后的位置，跳过子树只需一次读取</li>
+ * <li>结束项记录对应开始项的位置</li>
+ * <li>属性名和字符串记录在原始输入中的位置，读取时才解码</li>
+ * <li>数字已预先解析，下一项为long值或double的位表示；超出范围的数字记录在原始输入中的位置，下一项为其长度</li>
+ * </ul>
+ * 导航和取值都以磁带上的位置进行。对象的成员依次为属性名和值，属性名的类型为{@link JsonToken#NAME}。
+ * 磁带生成后只读，可以在多个线程间共享。
+ *
+ * <pre>
+ * JsonTape tape = Json.deserializeTape(json);
+ * int user = tape.get(tape.root(), &quot;user&quot;);
+ * long id = tape.getLong(tape.get(user, &quot;id&quot;));
+ * for (int i = tape.first(tags); i != tape.end(tags); i = tape.next(i)) {
+ * 	tape.getString(i);
+ * }
+ * </pre>
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public final class JsonTape {
+
+	private static final int TAG_SHIFT = 56;
+	private static final long PAYLOAD_MASK = (1L << TAG_SHIFT) - 1;
+
+	/**
+	 * 开始项中元素个数占24位，超出时读取需要遍历计数
+	 */
+	private static final int COUNT_SHIFT = 32;
+	private static final int MAX_COUNT = 0xFFFFFF;
+
+	private static final int BEGIN_OBJECT = '{';
+	private static final int END_OBJECT = '}';
+	private static final int BEGIN_ARRAY = '[';
+	private static final int END_ARRAY = ']';
+	private static final int NAME = ':';
+	private static final int STRING = '"';
+	private static final int LONG = 'l';
+	private static final int DOUBLE = 'd';
+	private static final int BIG = 'b';
+	private static final int TRUE = 't';
+	private static final int FALSE = 'f';
+	private static final int NULL = 'n';
+
+	/**
+	 * 原始输入
+	 */
+	private final char[] source;
+
+	private long[] tape;
+	private int size;
+
+	/**
+	 * 解析并生成磁带
+	 *
+	 * @param json
+	 * @throws JsonException
+	 */
+	JsonTape(String json) {
+		this.source = json.toCharArray();
+		this.tape = new long[Math.max(16, source.length / 4)];
+		this.build();
+		if (tape.length - size > 1024) {
+			long[] trimmed = new long[size];
+			System.arraycopy(tape, 0, trimmed, 0, size);
+			tape = trimmed;
+		}
+	}
+
+	private void append(int tag, long payload) {
+		appendRaw(((long) tag << TAG_SHIFT) | payload);
+	}
+
+	private void appendRaw(long value) {
+		if (size == tape.length) {
+			long[] larger = new long[size * 2];
+			System.arraycopy(tape, 0, larger, 0, size);
+			tape = larger;
+		}
+		tape[size++] = value;
+	}
+
+	/**
+	 * 生成磁带，以显式的栈代替递归，语法与{@link JsonDeserializer}一致
+	 *
+	 * @throws JsonException
+	 */
+	private void build() {
+		JsonDeserializer lexer = new JsonDeserializer();
+		lexer.reset(source, 0, source.length);
+
+		// 未闭合的对象和数组的开始项位置及元素个数
+		int[] stack = new int[32];
+		int[] counts = new int[32];
+		int depth = 0;
+
+		int c = lexer.nextNonWhiteSpace();
+		while (true) {
+			// 此时c为一个值的首字符
+			if (c == '{' || c == '[') {
+				lexer.consume();
+				if (depth == stack.length) {
+					int[] larger = new int[depth * 2];
+					System.arraycopy(stack, 0, larger, 0, depth);
+					stack = larger;
+					larger = new int[depth * 2];
+					System.arraycopy(counts, 0, larger, 0, depth);
+					counts = larger;
+				}
+				stack[depth] = size;
+				counts[depth] = 0;
+				depth++;
+				append(c, 0);
+
+				int close = c == '{' ? '}' : ']';
+				c = lexer.nextNonWhiteSpace();
+				if (c != close) {
+					if (close == '}') {
+						c = name(lexer, c);
+					}
+					counts[depth - 1]++;
+					continue;
+				}
+			} else {
+				value(lexer, c);
+				if (depth == 0) {
+					return;
+				}
+				c = lexer.nextNonWhiteSpace();
+			}
+
+			// 此时c为值之后的字符，依次闭合已结束的对象和数组
+			while (true) {
+				boolean object = tag(tape[stack[depth - 1]]) == BEGIN_OBJECT;
+				if (c == ',') {
+					lexer.consume();
+					c = lexer.nextNonWhiteSpace();
+					if (object) {
+						c = name(lexer, c);
+						counts[depth - 1]++;
+						break;
+					}
+					// 允许末尾多余的逗号
+					if (c != ']') {
+						counts[depth - 1]++;
+						break;
+					}
+				} else if (c != (object ? '}' : ']')) {
+					throw lexer.jsonException(c);
+				}
+
+				lexer.consume();
+				depth--;
+				int begin = stack[depth];
+				append(object ? END_OBJECT : END_ARRAY, begin);
+				tape[begin] |= ((long) Math.min(counts[depth], MAX_COUNT) << COUNT_SHIFT)
+						| size;
+				if (depth == 0) {
+					return;
+				}
+				c = lexer.nextNonWhiteSpace();
+			}
+		}
+	}
+
+	/**
+	 * 读取属性名及其后的冒号
+	 *
+	 * @return 值的首字符
+	 */
+	private int name(JsonDeserializer lexer, int c) {
+		if (c != '"' && c != '\'') {
+			throw lexer.jsonException(c);
+		}
+		lexer.consume();
+		append(NAME, lexer.position());
+		skipString(lexer, (char) c);
+
+		c = lexer.nextNonWhiteSpace();
+		if (c != ':') {
+			throw lexer.jsonException(c);
+		}
+		lexer.consume();
+		return lexer.nextNonWhiteSpace();
+	}
+
+	/**
+	 * 跳过字符串，开头的引号已被消费；含转义字符时解码一次以检查其格式
+	 */
+	private void skipString(JsonDeserializer lexer, char quote) {
+		char[] source = this.source;
+		for (int i = lexer.position(); i < source.length; i++) {
+			char c = source[i];
+			if (c == quote) {
+				lexer.reset(source, i + 1, source.length);
+				return;
+			} else if (c == '\\') {
+				lexer.string(quote);
+				return;
+			}
+		}
+		lexer.reset(source, source.length, source.length);
+	}
+
+	private void value(JsonDeserializer lexer, int c) {
+		switch (c) {
+		case '"':
+		case '\'':
+			lexer.consume();
+			append(STRING, lexer.position());
+			skipString(lexer, (char) c);
+			break;
+		case 't':
+			lexer.literal("true");
+			append(TRUE, 0);
+			break;
+		case 'f':
+			lexer.literal("false");
+			append(FALSE, 0);
+			break;
+		case 'n':
+			lexer.literal("null");
+			append(NULL, 0);
+			break;
+		case '-':
+		case '0':
+		case '1':
+		case '2':
+		case '3':
+		case '4':
+		case '5':
+		case '6':
+		case '7':
+		case '8':
+		case '9':
+			int start = lexer.position();
+			switch (lexer.scanNumber()) {
+			case JsonLexer.NUMBER_LONG:
+				append(LONG, 0);
+				appendRaw(lexer.longValue);
+				break;
+			case JsonLexer.NUMBER_DOUBLE:
+				append(DOUBLE, 0);
+				appendRaw(Double.doubleToRawLongBits(lexer.doubleValue));
+				break;
+			default:
+				append(BIG, start);
+				appendRaw(lexer.position() - start);
+			}
+			break;
+		default:
+			throw lexer.jsonException(c);
+		}
+	}
+
+	private static int tag(long entry) {
+		return (int) (entry >>> TAG_SHIFT);
+	}
+
+	private static int payload(long entry) {
+		return (int) (entry & PAYLOAD_MASK);
+	}
+
+	private long entry(int index) {
+		if (index < 0 || index >= size) {
+			throw new JsonException("磁带位置越界:" + index);
+		}
+		return tape[index];
+	}
+
+	/**
+	 * 根值的位置
+	 *
+	 * @return
+	 */
+	public int root() {
+		return 0;
+	}
+
+	/**
+	 * 磁带项数
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 指定位置的类型，数字的第二项不是合法的位置
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public JsonToken getType(int index) {
+		switch (tag(entry(index))) {
+		case BEGIN_OBJECT:
+			return JsonToken.BEGIN_OBJECT;
+		case END_OBJECT:
+			return JsonToken.END_OBJECT;
+		case BEGIN_ARRAY:
+			return JsonToken.BEGIN_ARRAY;
+		case END_ARRAY:
+			return JsonToken.END_ARRAY;
+		case NAME:
+			return JsonToken.NAME;
+		case STRING:
+			return JsonToken.STRING;
+		case LONG:
+		case DOUBLE:
+		case BIG:
+			return JsonToken.NUMBER;
+		case TRUE:
+		case FALSE:
+			return JsonToken.BOOLEAN;
+		case NULL:
+			return JsonToken.NULL;
+		default:
+			throw new JsonException("不是值的起始位置:" + index);
+		}
+	}
+
+	/**
+	 * 下一个兄弟项的位置，对象和数组整体跳过
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public int next(int index) {
+		long entry = entry(index);
+		switch (tag(entry)) {
+		case BEGIN_OBJECT:
+		case BEGIN_ARRAY:
+			return payload(entry);
+		case LONG:
+		case DOUBLE:
+		case BIG:
+			return index + 2;
+		default:
+			return index + 1;
+		}
+	}
+
+	/**
+	 * 对象或数组的第一个成员的位置，为空时等于{@link #end(int)}
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public int first(int index) {
+		container(index);
+		return index + 1;
+	}
+
+	/**
+	 * 对象或数组的结束项的位置
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public int end(int index) {
+		return payload(container(index)) - 1;
+	}
+
+	/**
+	 * 对象的属性数或数组的元素数
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public int size(int index) {
+		int count = (int) (container(index) >>> COUNT_SHIFT) & MAX_COUNT;
+		if (count < MAX_COUNT) {
+			return count;
+		}
+
+		count = 0;
+		int step = tag(tape[index]) == BEGIN_OBJECT ? 2 : 1;
+		for (int i = first(index), end = end(index); i != end; i = next(i)) {
+			count++;
+		}
+		return count / step;
+	}
+
+	private long container(int index) {
+		long entry = entry(index);
+		int tag = tag(entry);
+		if (tag != BEGIN_OBJECT && tag != BEGIN_ARRAY) {
+			throw new JsonException("不是对象或数组:" + getType(index));
+		}
+		return entry;
+	}
+
+	/**
+	 * 对象中属性值的位置，属性名不含转义时不经解码直接与输入比较
+	 *
+	 * @param index
+	 *            对象的位置
+	 * @param name
+	 * @return 不存在时返回-1
+	 * @throws JsonException
+	 */
+	public int get(int index, String name) {
+		if (tag(entry(index)) != BEGIN_OBJECT) {
+			throw new JsonException("不是对象:" + getType(index));
+		}
+		// 属性名重复时与Map一致，以最后一个为准
+		int value = -1;
+		for (int i = index + 1, end = end(index); i != end; i = next(i + 1)) {
+			if (nameEquals(payload(tape[i]), name)) {
+				value = i + 1;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * 数组中元素的位置
+	 *
+	 * @param index
+	 *            数组的位置
+	 * @param i
+	 * @return 越界时返回-1
+	 * @throws JsonException
+	 */
+	public int get(int index, int i) {
+		if (tag(entry(index)) != BEGIN_ARRAY) {
+			throw new JsonException("不是数组:" + getType(index));
+		}
+		int element = index + 1;
+		int end = end(index);
+		for (; i > 0 && element != end; i--) {
+			element = next(element);
+		}
+		return i < 0 || element == end ? -1 : element;
+	}
+
+	private boolean nameEquals(int offset, String name) {
+		char[] source = this.source;
+		char quote = source[offset - 1];
+		int length = name.length();
+		if (source.length - offset <= length) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			char c = source[offset + i];
+			if (c == '\\') {
+				return name.equals(string(offset));
+			}
+			if (c != name.charAt(i)) {
+				return false;
+			}
+		}
+		return source[offset + length] == quote;
+	}
+
+	/**
+	 * 属性名或字符串值
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public String getString(int index) {
+		long entry = entry(index);
+		int tag = tag(entry);
+		if (tag != STRING && tag != NAME) {
+			throw new JsonException("不是字符串:" + getType(index));
+		}
+		return string(payload(entry));
+	}
+
+	private String string(int offset) {
+		char[] source = this.source;
+		char quote = source[offset - 1];
+		for (int i = offset; i < source.length; i++) {
+			char c = source[i];
+			if (c == quote) {
+				return new String(source, offset, i - offset);
+			} else if (c == '\\') {
+				break;
+			}
+		}
+
+		// 含转义字符
+		JsonDeserializer lexer = new JsonDeserializer();
+		lexer.reset(source, offset, source.length);
+		return lexer.string(quote);
+	}
+
+	/**
+	 * 整数值，浮点数必须能无损转换
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public long getLong(int index) {
+		switch (tag(entry(index))) {
+		case LONG:
+			return tape[index + 1];
+		case DOUBLE:
+			double d = Double.longBitsToDouble(tape[index + 1]);
+			if (d >= 0x1p63 || d < -0x1p63) {
+				throw new JsonException("数值超出long范围:" + d);
+			}
+			long value = (long) d;
+			if (value != d) {
+				throw new JsonException("不是整数:" + d);
+			}
+			return value;
+		case BIG:
+			throw new JsonException("数值超出long范围:" + big(index));
+		default:
+			throw new JsonException("不是数字:" + getType(index));
+		}
+	}
+
+	/**
+	 * 浮点数值
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public double getDouble(int index) {
+		switch (tag(entry(index))) {
+		case LONG:
+			return tape[index + 1];
+		case DOUBLE:
+			return Double.longBitsToDouble(tape[index + 1]);
+		case BIG:
+			return big(index).doubleValue();
+		default:
+			throw new JsonException("不是数字:" + getType(index));
+		}
+	}
+
+	/**
+	 * 超出long或double范围的数字，BigInteger或BigDecimal
+	 */
+	private Number big(int index) {
+		return NumberParser.parse(new String(source, payload(tape[index]),
+				(int) tape[index + 1]));
+	}
+
+	/**
+	 * 布尔值
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public boolean getBoolean(int index) {
+		switch (tag(entry(index))) {
+		case TRUE:
+			return true;
+		case FALSE:
+			return false;
+		default:
+			throw new JsonException("不是布尔值:" + getType(index));
+		}
+	}
+
+	/**
+	 * 是否为null
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	public boolean isNull(int index) {
+		return tag(entry(index)) == NULL;
+	}
+
+	/**
+	 * 将指定位置的值转换为与{@link Json#deserialize(String)}相同的对象
+	 *
+	 * @param index
+	 * @return
+	 * @throws JsonException
+	 */
+	@SuppressWarnings("unchecked")
+	public Object getValue(int index) {
+		long entry = entry(index);
+		switch (tag(entry)) {
+		case BEGIN_OBJECT: {
+			Map map = new HashMap();
+			for (int i = index + 1, end = payload(entry) - 1; i != end; i = next(i + 1)) {
+				map.put(string(payload(tape[i])), getValue(i + 1));
+			}
+			return map;
+		}
+		case BEGIN_ARRAY: {
+			List list = new ArrayList();
+			for (int i = index + 1, end = payload(entry) - 1; i != end; i = next(i)) {
+				list.add(getValue(i));
+			}
+			return list;
+		}
+		case NAME:
+		case STRING:
+			return string(payload(entry));
+		case LONG:
+			return Long.valueOf(tape[index + 1]);
+		case DOUBLE:
+			return Double.valueOf(Double.longBitsToDouble(tape[index + 1]));
+		case BIG:
+			return big(index);
+		case TRUE:
+			return Boolean.TRUE;
+		case FALSE:
+			return Boolean.FALSE;
+		case NULL:
+			return null;
+		default:
+			throw new JsonException("不是值的起始位置:" + index);
+		}
+	}
+}
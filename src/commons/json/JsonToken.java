@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+/**
+ * {@link JsonReader}读取到的标记类型
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public enum JsonToken {
+	/**
+	 * 对象开始 {
+	 */
+	BEGIN_OBJECT,
+	/**
+	 * 对象结束 }
+	 */
+	END_OBJECT,
+	/**
+	 * 数组开始 [
+	 */
+	BEGIN_ARRAY,
+	/**
+	 * 数组结束 ]
+	 */
+	END_ARRAY,
+	/**
+	 * 属性名
+	 */
+	NAME,
+	/**
+	 * 字符串值
+	 */
+	STRING,
+	/**
+	 * 数字值
+	 */
+	NUMBER,
+	/**
+	 * 布尔值
+	 */
+	BOOLEAN,
+	/**
+	 * null值
+	 */
+	NULL,
+	/**
+	 * 输入结束
+	 */
+	END_DOCUMENT
+}
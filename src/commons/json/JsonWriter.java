@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 流式输出器，直接向输出载体写入Json文本，不构建中间的{@link JsonAware}树
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public class JsonWriter {
+
+	private static final JsonString.Escaper BASIC_ESCAPER = new JsonString.Escaper(
+			false);
+
+	/**
+	 * 输出载体
+	 */
+	private final Appendable out;
+
+	/**
+	 * 数字格式化的临时缓冲区
+	 */
+	private final char[] numberBuffer = new char[NumberFormatter.MAX_LENGTH];
+
+	/**
+	 * 实例化流式输出器
+	 *
+	 * @param out
+	 *            输出载体
+	 */
+	public JsonWriter(Appendable out) {
+		this.out = out;
+	}
+
+	/**
+	 * 写入单个字符，不做转义
+	 *
+	 * @param c
+	 * @throws IOException
+	 */
+	public void write(char c) throws IOException {
+		out.append(c);
+	}
+
+	/**
+	 * 写入字符序列，不做转义
+	 *
+	 * @param csq
+	 * @throws IOException
+	 */
+	public void write(CharSequence csq) throws IOException {
+		out.append(csq);
+	}
+
+	/**
+	 * 写入null
+	 *
+	 * @throws IOException
+	 */
+	public void writeNull() throws IOException {
+		out.append("null");
+	}
+
+	/**
+	 * 写入布尔值
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeBoolean(boolean value) throws IOException {
+		out.append(value ? "true" : "false");
+	}
+
+	/**
+	 * 写入整数
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeNumber(long value) throws IOException {
+		append(out, numberBuffer, NumberFormatter.format(value, numberBuffer,
+				0));
+	}
+
+	/**
+	 * 写入单精度浮点数，为能还原原值的最短表示
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeNumber(float value) throws IOException {
+		append(out, numberBuffer, NumberFormatter.format(value, numberBuffer,
+				0));
+	}
+
+	/**
+	 * 写入浮点数，为能还原原值的最短表示
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeNumber(double value) throws IOException {
+		append(out, numberBuffer, NumberFormatter.format(value, numberBuffer,
+				0));
+	}
+
+	/**
+	 * 写入数字对象
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeNumber(Number value) throws IOException {
+		NumberFormatter.append(out, value, numberBuffer);
+	}
+
+	/**
+	 * 写入带引号并转义的字符串
+	 *
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeString(CharSequence value) throws IOException {
+		out.append('"');
+		BASIC_ESCAPER.escapeJsonString(value, out);
+		out.append('"');
+	}
+
+	/**
+	 * 写入转义后的属性名及其后的冒号
+	 *
+	 * @param name
+	 * @throws IOException
+	 */
+	public void writeName(String name) throws IOException {
+		out.append('"');
+		BASIC_ESCAPER.escapeJsonString(name, out);
+		out.append("\":");
+	}
+
+	/**
+	 * 一次写入预先生成的属性名片段
+	 *
+	 * @param property
+	 * @throws IOException
+	 */
+	void writeName(Reflector.Property property) throws IOException {
+		if (out instanceof Utf8Writer) {
+			((Utf8Writer) out).write(property.nameBytes);
+		} else {
+			append(out, property.nameChars, property.nameChars.length);
+		}
+	}
+
+	/**
+	 * 生成转义后的属性名片段<code>"name":</code>
+	 *
+	 * @param name
+	 * @return
+	 */
+	static String nameFragment(String name) {
+		StringBuilder sb = new StringBuilder(name.length() + 3);
+		sb.append('"');
+		try {
+			BASIC_ESCAPER.escapeJsonString(name, sb);
+		} catch (IOException e) {
+			throw new JsonException(e);
+		}
+		return sb.append("\":").toString();
+	}
+
+	/**
+	 * 将buf中的字符写入out，常见的载体不经过中间对象
+	 *
+	 * @param out
+	 * @param buf
+	 * @param len
+	 * @throws IOException
+	 */
+	static void append(Appendable out, char[] buf, int len) throws IOException {
+		if (out instanceof StringBuilder) {
+			((StringBuilder) out).append(buf, 0, len);
+		} else if (out instanceof StringBuffer) {
+			((StringBuffer) out).append(buf, 0, len);
+		} else if (out instanceof Writer) {
+			((Writer) out).write(buf, 0, len);
+		} else {
+			for (int i = 0; i < len; i++) {
+				out.append(buf[i]);
+			}
+		}
+	}
+
+}
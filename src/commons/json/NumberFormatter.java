@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * 将数字直接格式化到字符数组，不创建字符串
+ * <p>
+ * double和float按Schubfach算法输出能唯一还原原值的最短十进制表示，格式与{@link Double#toString(double)}、
+ * {@link Float#toString(float)}相同：10^-3 &lt;= |v| &lt; 10^7 时为普通格式，否则为科学计数法，如1.0E-5。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class NumberFormatter {
+
+	/**
+	 * 格式化一个数字所需的最大字符数
+	 */
+	static final int MAX_LENGTH = 32;
+
+	private static final int DOUBLE_P = 53;
+	private static final int DOUBLE_Q_MIN = -1074;
+	private static final long DOUBLE_C_MIN = 1L << DOUBLE_P - 1;
+	private static final int DOUBLE_BQ_MASK = (1 << 11) - 1;
+	private static final long DOUBLE_T_MASK = (1L << DOUBLE_P - 1) - 1;
+	private static final long DOUBLE_C_TINY = 3;
+	private static final int DOUBLE_H = 17;
+
+	private static final int FLOAT_P = 24;
+	private static final int FLOAT_Q_MIN = -149;
+	private static final int FLOAT_C_MIN = 1 << FLOAT_P - 1;
+	private static final int FLOAT_BQ_MASK = (1 << 8) - 1;
+	private static final int FLOAT_T_MASK = (1 << FLOAT_P - 1) - 1;
+	private static final int FLOAT_C_TINY = 8;
+	private static final int FLOAT_H = 9;
+
+	private static final long MASK_63 = (1L << 63) - 1;
+	private static final long MASK_32 = (1L << 32) - 1;
+	private static final int MASK_28 = (1 << 28) - 1;
+
+	private static final int K_MIN = -324;
+	private static final int K_MAX = 292;
+
+	/**
+	 * 10^-k = β 2^r，2^125 &lt;= β &lt; 2^126，g = floor(β) + 1，依次为g的高63位和低63位
+	 */
+	private static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	/**
+	 * 0至99的十位和个位
+	 */
+	private static final char[] DIGIT_TENS = new char[100];
+	private static final char[] DIGIT_ONES = new char[100];
+
+	static {
+		for (int k = K_MIN; k <= K_MAX; k++) {
+			BigInteger beta;
+			if (k <= 0) {
+				BigInteger power = BigInteger.TEN.pow(-k);
+				int shift = 126 - power.bitLength();
+				beta = shift >= 0 ? power.shiftLeft(shift) : power
+						.shiftRight(-shift);
+			} else {
+				BigInteger power = BigInteger.TEN.pow(k);
+				beta = BigInteger.ONE.shiftLeft(125 + power.bitLength()).divide(
+						power);
+			}
+			BigInteger g = beta.add(BigInteger.ONE);
+			int i = (k - K_MIN) * 2;
+			G[i] = g.shiftRight(63).longValue();
+			G[i + 1] = g.longValue() & MASK_63;
+		}
+
+		for (int i = 0; i < 100; i++) {
+			DIGIT_TENS[i] = (char) ('0' + i / 10);
+			DIGIT_ONES[i] = (char) ('0' + i % 10);
+		}
+
+		long power = 1;
+		for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = power;
+			power *= 10;
+		}
+	}
+
+	private NumberFormatter() {
+	}
+
+	/**
+	 * 写入整数
+	 *
+	 * @param value
+	 * @param buf
+	 * @param off
+	 * @return 写入后的位置
+	 */
+	static int format(long value, char[] buf, int off) {
+		if (value < 0) {
+			if (value == Long.MIN_VALUE) {
+				String min = "-9223372036854775808";
+				min.getChars(0, min.length(), buf, off);
+				return off + min.length();
+			}
+			buf[off++] = '-';
+			value = -value;
+		}
+
+		int end = off + length(value);
+		int i = end;
+		// 每次取两位
+		while (value > Integer.MAX_VALUE) {
+			long q = value / 100;
+			int r = (int) (value - q * 100);
+			buf[--i] = DIGIT_ONES[r];
+			buf[--i] = DIGIT_TENS[r];
+			value = q;
+		}
+		int v = (int) value;
+		while (v >= 100) {
+			int q = v / 100;
+			int r = v - q * 100;
+			buf[--i] = DIGIT_ONES[r];
+			buf[--i] = DIGIT_TENS[r];
+			v = q;
+		}
+		buf[--i] = DIGIT_ONES[v];
+		if (v >= 10) {
+			buf[--i] = DIGIT_TENS[v];
+		}
+		return end;
+	}
+
+	/**
+	 * 非负数的位数
+	 */
+	private static int length(long value) {
+		int len = flog10pow2(64 - Long.numberOfLeadingZeros(value));
+		return value >= POWERS_OF_TEN[len] ? len + 1 : Math.max(len, 1);
+	}
+
+	/**
+	 * 写入double的最短表示，NaN和无穷大与{@link Double#toString(double)}相同
+	 *
+	 * @param value
+	 * @param buf
+	 * @param off
+	 * @return 写入后的位置
+	 */
+	static int format(double value, char[] buf, int off) {
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & DOUBLE_T_MASK;
+		int bq = (int) (bits >>> DOUBLE_P - 1) & DOUBLE_BQ_MASK;
+		if (bq == DOUBLE_BQ_MASK) {
+			return special(Double.toString(value), buf, off);
+		}
+		if (bits < 0) {
+			buf[off++] = '-';
+		}
+		if (bq != 0) {
+			// 规格化数
+			int mq = -DOUBLE_Q_MIN + 1 - bq;
+			long c = DOUBLE_C_MIN | t;
+			if (0 < mq && mq < DOUBLE_P) {
+				// 整数
+				long f = c >> mq;
+				if (f << mq == c) {
+					return toChars(f, 0, buf, off);
+				}
+			}
+			return toDecimal(-mq, c, 0, buf, off);
+		}
+		if (t != 0) {
+			// 非规格化数
+			return t < DOUBLE_C_TINY ? toDecimal(DOUBLE_Q_MIN, 10 * t, -1, buf,
+					off) : toDecimal(DOUBLE_Q_MIN, t, 0, buf, off);
+		}
+		return special("0.0", buf, off);
+	}
+
+	/**
+	 * 写入float的最短表示，NaN和无穷大与{@link Float#toString(float)}相同
+	 *
+	 * @param value
+	 * @param buf
+	 * @param off
+	 * @return 写入后的位置
+	 */
+	static int format(float value, char[] buf, int off) {
+		int bits = Float.floatToRawIntBits(value);
+		int t = bits & FLOAT_T_MASK;
+		int bq = (bits >>> FLOAT_P - 1) & FLOAT_BQ_MASK;
+		if (bq == FLOAT_BQ_MASK) {
+			return special(Float.toString(value), buf, off);
+		}
+		if (bits < 0) {
+			buf[off++] = '-';
+		}
+		if (bq != 0) {
+			int mq = -FLOAT_Q_MIN + 1 - bq;
+			int c = FLOAT_C_MIN | t;
+			if (0 < mq && mq < FLOAT_P) {
+				int f = c >> mq;
+				if (f << mq == c) {
+					return toChars(f, 0, buf, off);
+				}
+			}
+			return toDecimal(-mq, c, 0, buf, off);
+		}
+		if (t != 0) {
+			return t < FLOAT_C_TINY ? toDecimal(FLOAT_Q_MIN, 10 * t, -1, buf,
+					off) : toDecimal(FLOAT_Q_MIN, t, 0, buf, off);
+		}
+		return special("0.0", buf, off);
+	}
+
+	private static int special(String text, char[] buf, int off) {
+		text.getChars(0, text.length(), buf, off);
+		return off + text.length();
+	}
+
+	/**
+	 * 在c 2^q的舍入区间内选取位数最少且最接近的十进制数
+	 */
+	private static int toDecimal(int q, long c, int dk, char[] buf, int off) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			// 2的幂，区间下界更近
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+
+		int i = (k - K_MIN) * 2;
+		long g1 = G[i];
+		long g0 = G[i + 1];
+
+		long vb = rop(g1, g0, cb << h);
+		long vbl = rop(g1, g0, cbl << h);
+		long vbr = rop(g1, g0, cbr << h);
+
+		long s = vb >> 2;
+		if (s >= 100) {
+			long sp10 = 10 * Math.multiplyHigh(s, 115292150460684698L << 4);
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				return toChars(upin ? sp10 : tp10, k, buf, off);
+			}
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) {
+			return toChars(uin ? s : t, k + dk, buf, off);
+		}
+		long cmp = vb - (s + t << 1);
+		return toChars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk,
+				buf, off);
+	}
+
+	private static int toDecimal(int q, int c, int dk, char[] buf, int off) {
+		int out = c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		} else {
+			cbl = cb - 1;
+			k = flog10threeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 33;
+
+		long g = G[(k - K_MIN) * 2] + 1;
+
+		int vb = rop(g, cb << h);
+		int vbl = rop(g, cbl << h);
+		int vbr = rop(g, cbr << h);
+
+		int s = vb >> 2;
+		if (s >= 100) {
+			int sp10 = 10 * (int) (s * 1717986919L >>> 34);
+			int tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) {
+				return toChars(upin ? sp10 : tp10, k, buf, off);
+			}
+		}
+		int t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) {
+			return toChars(uin ? s : t, k + dk, buf, off);
+		}
+		int cmp = vb - (s + t << 1);
+		return toChars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk,
+				buf, off);
+	}
+
+	private static long rop(long g1, long g0, long cp) {
+		long x1 = Math.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = Math.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (z & MASK_63) + MASK_63 >>> 63;
+	}
+
+	private static int rop(long g, long cp) {
+		long x1 = Math.multiplyHigh(g, cp);
+		long vbp = x1 >>> 31;
+		return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+	}
+
+	/**
+	 * 写入f 10^e，f最多17位
+	 */
+	private static int toChars(long f, int e, char[] buf, int off) {
+		int len = flog10pow2(64 - Long.numberOfLeadingZeros(f));
+		if (f >= POWERS_OF_TEN[len]) {
+			len++;
+		}
+		// 补齐为17位，f 10^e = 0.f 10^e'
+		f *= POWERS_OF_TEN[DOUBLE_H - len];
+		e += len;
+
+		// 拆分为最高位h、中间8位m和最低8位l
+		long hm = Math.multiplyHigh(f, 193428131138340668L) >>> 20;
+		int l = (int) (f - 100000000L * hm);
+		int h = (int) (hm * 1441151881L >>> 57);
+		int m = (int) (hm - 100000000 * h);
+		return toChars(h, m, l, true, e, buf, off);
+	}
+
+	/**
+	 * 写入f 10^e，f最多9位
+	 */
+	private static int toChars(int f, int e, char[] buf, int off) {
+		int len = flog10pow2(32 - Integer.numberOfLeadingZeros(f));
+		if (f >= POWERS_OF_TEN[len]) {
+			len++;
+		}
+		f *= (int) POWERS_OF_TEN[FLOAT_H - len];
+		e += len;
+
+		int h = (int) (f * 1441151881L >>> 57);
+		int m = f - 100000000 * h;
+		return toChars(h, m, 0, false, e, buf, off);
+	}
+
+	/**
+	 * 按{@link Double#toString(double)}的格式写入0.hml 10^e
+	 */
+	private static int toChars(int h, int m, int l, boolean low, int e,
+			char[] buf, int off) {
+		if (0 < e && e <= 7) {
+			// 普通格式，没有前导的0
+			buf[off++] = (char) ('0' + h);
+			int y = y(m);
+			int i = 1;
+			for (; i < e; i++) {
+				int t = 10 * y;
+				buf[off++] = (char) ('0' + (t >>> 28));
+				y = t & MASK_28;
+			}
+			buf[off++] = '.';
+			for (; i <= 8; i++) {
+				int t = 10 * y;
+				buf[off++] = (char) ('0' + (t >>> 28));
+				y = t & MASK_28;
+			}
+			return lowDigits(l, low, buf, off);
+		} else if (-3 < e && e <= 0) {
+			// 普通格式，有前导的0
+			buf[off++] = '0';
+			buf[off++] = '.';
+			for (; e < 0; e++) {
+				buf[off++] = '0';
+			}
+			buf[off++] = (char) ('0' + h);
+			off = eightDigits(m, buf, off);
+			return lowDigits(l, low, buf, off);
+		}
+
+		// 科学计数法
+		buf[off++] = (char) ('0' + h);
+		buf[off++] = '.';
+		off = eightDigits(m, buf, off);
+		off = lowDigits(l, low, buf, off);
+		return exponent(e - 1, buf, off);
+	}
+
+	private static int lowDigits(int l, boolean low, char[] buf, int off) {
+		if (low && l != 0) {
+			off = eightDigits(l, buf, off);
+		}
+		// 去掉末尾的0，但保留小数点后的一位
+		while (buf[off - 1] == '0') {
+			off--;
+		}
+		if (buf[off - 1] == '.') {
+			off++;
+		}
+		return off;
+	}
+
+	private static int eightDigits(int m, char[] buf, int off) {
+		int y = y(m);
+		for (int i = 0; i < 8; i++) {
+			int t = 10 * y;
+			buf[off++] = (char) ('0' + (t >>> 28));
+			y = t & MASK_28;
+		}
+		return off;
+	}
+
+	/**
+	 * floor((a + 1) 2^28 / 10^8) - 1，用于从左到右逐位取出a的8位数字
+	 */
+	private static int y(int a) {
+		return (int) (Math.multiplyHigh((long) (a + 1) << 28,
+				193428131138340668L) >>> 20) - 1;
+	}
+
+	private static int exponent(int e, char[] buf, int off) {
+		buf[off++] = 'E';
+		if (e < 0) {
+			buf[off++] = '-';
+			e = -e;
+		}
+		if (e >= 100) {
+			int d = e * 1311 >>> 17;
+			buf[off++] = (char) ('0' + d);
+			e -= 100 * d;
+			buf[off++] = (char) ('0' + e / 10);
+		} else if (e >= 10) {
+			buf[off++] = (char) ('0' + e / 10);
+		}
+		buf[off++] = (char) ('0' + e % 10);
+		return off;
+	}
+
+	private static int flog10pow2(int e) {
+		return (int) (e * 661971961083L >> 41);
+	}
+
+	private static int flog10threeQuartersPow2(int e) {
+		return (int) (e * 661971961083L + -274743187321L >> 41);
+	}
+
+	private static int flog2pow10(int e) {
+		return (int) (e * 913124641741L >> 38);
+	}
+
+	/**
+	 * 格式化数字对象并写入out，基本类型的包装类不创建字符串，其他类型使用其toString()
+	 *
+	 * @param out
+	 * @param value
+	 * @param buf
+	 *            长度不小于{@link #MAX_LENGTH}的临时缓冲区
+	 * @throws IOException
+	 */
+	static void append(Appendable out, Number value, char[] buf)
+			throws IOException {
+		int len;
+		if (value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte) {
+			len = format(value.longValue(), buf, 0);
+		} else if (value instanceof Double) {
+			len = format(value.doubleValue(), buf, 0);
+		} else if (value instanceof Float) {
+			len = format(value.floatValue(), buf, 0);
+		} else {
+			out.append(value.toString());
+			return;
+		}
+		JsonWriter.append(out, buf, len);
+	}
+}
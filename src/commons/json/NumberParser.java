@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 数字解析的公共部分，由{@link JsonDeserializer}和{@link JsonByteDeserializer}在读取数字时使用
+ * <p>
+ * 两者在缓冲区内直接累加有效数字和十进制指数，不创建字符串；{@link #toDouble(long, int, boolean)}
+ * 按Clinger和Eisel-Lemire算法得到正确舍入的double，无法确定时再由{@link #parse(String)}处理。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class NumberParser {
+
+	/**
+	 * 快速路径允许的最多有效数字，不超过19位时无符号long不会溢出
+	 */
+	static final int MAX_DIGITS = 19;
+
+	/**
+	 * 可精确表示为double的10的幂
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private static final int MIN_EXPONENT = -348;
+	private static final int MAX_EXPONENT = 347;
+
+	/**
+	 * 10的幂的128位尾数（向下取整，最高位为1），每个幂依次为高64位和低64位
+	 */
+	private static final long[] MANTISSAS = new long[(MAX_EXPONENT
+			- MIN_EXPONENT + 1) * 2];
+
+	static {
+		BigInteger ten = BigInteger.TEN;
+		for (int e = MIN_EXPONENT; e <= MAX_EXPONENT; e++) {
+			BigInteger mantissa;
+			if (e >= 0) {
+				BigInteger power = ten.pow(e);
+				int shift = power.bitLength() - 128;
+				mantissa = shift > 0 ? power.shiftRight(shift) : power
+						.shiftLeft(-shift);
+			} else {
+				BigInteger power = ten.pow(-e);
+				mantissa = BigInteger.ONE.shiftLeft(power.bitLength() + 127)
+						.divide(power);
+			}
+			int i = (e - MIN_EXPONENT) * 2;
+			MANTISSAS[i] = mantissa.shiftRight(64).longValue();
+			MANTISSAS[i + 1] = mantissa.longValue();
+		}
+	}
+
+	private NumberParser() {
+	}
+
+	/**
+	 * 计算 mantissa * 10^exponent 的正确舍入值
+	 *
+	 * @param mantissa
+	 *            无符号的有效数字
+	 * @param exponent
+	 * @param negative
+	 * @return 无法确定正确舍入或超出double范围时返回NaN
+	 */
+	static double toDouble(long mantissa, int exponent, boolean negative) {
+		if (mantissa == 0) {
+			return negative ? -0.0 : 0.0;
+		}
+
+		// Clinger：有效数字和10的幂都能精确表示时，一次运算即为正确舍入
+		if (mantissa > 0 && mantissa <= 1L << 53 && exponent >= -22
+				&& exponent <= 22) {
+			double value = mantissa;
+			value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value
+					* POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+		if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+			return Double.NaN;
+		}
+
+		// Eisel-Lemire
+		int zeros = Long.numberOfLeadingZeros(mantissa);
+		mantissa <<= zeros;
+		long exponent2 = ((217706L * exponent) >> 16) + 64 + 1023 - zeros;
+
+		int i = (exponent - MIN_EXPONENT) * 2;
+		long powerHigh = MANTISSAS[i];
+		long powerLow = MANTISSAS[i + 1];
+		long high = multiplyHigh(mantissa, powerHigh);
+		long low = mantissa * powerHigh;
+
+		if ((high & 0x1FF) == 0x1FF
+				&& Long.compareUnsigned(low + mantissa, mantissa) < 0) {
+			// 截断误差可能影响舍入，计入低64位
+			long lowHigh = multiplyHigh(mantissa, powerLow);
+			long lowLow = mantissa * powerLow;
+			long mergedHigh = high;
+			long mergedLow = low + lowHigh;
+			if (Long.compareUnsigned(mergedLow, low) < 0) {
+				mergedHigh++;
+			}
+			if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow == -1
+					&& Long.compareUnsigned(lowLow + mantissa, mantissa) < 0) {
+				return Double.NaN;
+			}
+			high = mergedHigh;
+			low = mergedLow;
+		}
+
+		long msb = high >>> 63;
+		long result = high >>> (msb + 9);
+		exponent2 -= 1 ^ msb;
+
+		// 恰好位于两个double中间
+		if (low == 0 && (high & 0x1FF) == 0 && (result & 3) == 1) {
+			return Double.NaN;
+		}
+
+		result += result & 1;
+		result >>>= 1;
+		if (result >>> 53 > 0) {
+			result >>>= 1;
+			exponent2++;
+		}
+		// 非规格化数、无穷大
+		if (exponent2 <= 0 || exponent2 >= 0x7FF) {
+			return Double.NaN;
+		}
+
+		long bits = exponent2 << 52 | result & 0x000FFFFFFFFFFFFFL;
+		if (negative) {
+			bits |= 0x8000000000000000L;
+		}
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * 无符号乘法的高64位
+	 */
+	private static long multiplyHigh(long x, long y) {
+		return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+
+	/**
+	 * 快速路径无法处理时解析数字文本
+	 *
+	 * @param text
+	 * @return 整数为Long，超出long范围为BigInteger；含小数点或指数为Double，超出double范围为BigDecimal
+	 * @throws JsonException
+	 */
+	static Number parse(String text) {
+		try {
+			if (text.indexOf('.') < 0 && text.indexOf('e') < 0
+					&& text.indexOf('E') < 0) {
+				// 不超过18个字符时不会超出long范围
+				if (text.length() < MAX_DIGITS) {
+					return Long.valueOf(Long.parseLong(text));
+				}
+				BigInteger value = new BigInteger(text);
+				return value.bitLength() < 64 ? (Number) Long.valueOf(value
+						.longValue()) : value;
+			}
+
+			double value = Double.parseDouble(text);
+			if (Double.isInfinite(value)) {
+				return new BigDecimal(text);
+			}
+			return Double.valueOf(value);
+		} catch (NumberFormatException e) {
+			throw new JsonException("非法的数字:" + text);
+		}
+	}
+}
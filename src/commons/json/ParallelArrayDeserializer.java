@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import static commons.json.JsonLexer.CHAR_TYPES;
+import static commons.json.JsonLexer.WHITESPACE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 并行解析顶层的大数组
+ * <p>
+ * 先顺序预扫描一遍，只跟踪引号、转义和嵌套深度，在数组内部深度为1的逗号处切分为若干段，
+ * 再在ForkJoinPool中并行解析各段，按顺序拼接为与串行解析相同的{@link ArrayList}。
+ * 不是数组、输入太小或结构不完整时退回串行解析，保证结果和错误与串行一致。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class ParallelArrayDeserializer {
+
+	/**
+	 * 小于此长度的输入直接串行解析
+	 */
+	static final int MIN_PARALLEL_LENGTH = 1 << 20;
+
+	/**
+	 * 每个线程分到的段数，多分几段以平衡各元素大小不均
+	 */
+	private static final int PARTS_PER_THREAD = 4;
+
+	private ParallelArrayDeserializer() {
+	}
+
+	/**
+	 * 反序列化，顶层为大数组时并行解析
+	 *
+	 * @param json
+	 * @return
+	 * @throws JsonException
+	 */
+	static Object deserialize(String json) {
+		return deserialize(json.toCharArray(), parts(json.length()));
+	}
+
+	/**
+	 * 反序列化UTF-8字节，顶层为大数组时并行解析
+	 *
+	 * @param bytes
+	 * @return
+	 * @throws JsonException
+	 */
+	static Object deserialize(byte[] bytes) {
+		return deserialize(bytes, parts(bytes.length));
+	}
+
+	private static int parts(int length) {
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if (length < MIN_PARALLEL_LENGTH || parallelism < 2) {
+			return 1;
+		}
+		return parallelism * PARTS_PER_THREAD;
+	}
+
+	static Object deserialize(char[] buf, int parts) {
+		return deserialize(new CharInput(buf), parts);
+	}
+
+	static Object deserialize(byte[] bytes, int parts) {
+		return deserialize(new ByteInput(bytes), parts);
+	}
+
+	private static Object deserialize(final Input input, int parts) {
+		int start = parts > 1 ? input.arrayStart() : -1;
+		final int[] bounds = start >= 0 ? split(input, start, parts) : null;
+		if (bounds == null) {
+			return input.deserialize();
+		}
+
+		List<CompletableFuture<List<Object>>> futures = new ArrayList<CompletableFuture<List<Object>>>();
+		for (int i = 0; i < bounds.length - 1; i++) {
+			final int from = bounds[i] + 1;
+			final int to = bounds[i + 1];
+			final boolean last = i == bounds.length - 2;
+			futures.add(CompletableFuture.supplyAsync(
+					() -> input.elements(from, to, last)));
+		}
+		return join(futures);
+	}
+
+	/**
+	 * 按顺序等待各段的结果并拼接，抛出最靠前一段的异常
+	 *
+	 * @param futures
+	 * @return
+	 */
+	private static List<Object> join(
+			List<CompletableFuture<List<Object>>> futures) {
+		List<List<Object>> results = new ArrayList<List<Object>>(
+				futures.size());
+		int size = 0;
+		try {
+			for (CompletableFuture<List<Object>> future : futures) {
+				List<Object> result = future.join();
+				results.add(result);
+				size += result.size();
+			}
+		} catch (CompletionException e) {
+			for (CompletableFuture<List<Object>> future : futures) {
+				future.cancel(true);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new JsonException(cause);
+		}
+
+		List<Object> ret = new ArrayList<Object>(size);
+		for (List<Object> result : results) {
+			ret.addAll(result);
+		}
+		return ret;
+	}
+
+	/**
+	 * 预扫描以'['开头的数组，找出切分点
+	 *
+	 * @param input
+	 * @param start
+	 *            '['的位置
+	 * @param parts
+	 *            期望的段数
+	 * @return 依次为'['、各切分逗号和结尾']'的位置；数组不完整时返回null
+	 */
+	static int[] split(Input input, int start, int parts) {
+		int length = input.length();
+		int step = Math.max((length - start) / parts, 1);
+		int[] bounds = new int[parts + 1];
+		int count = 0;
+		bounds[count++] = start;
+
+		int next = start + step;
+		int depth = 0;
+		int quote = 0;
+		for (int i = start; i < length; i++) {
+			int c = input.charAt(i);
+			if (quote != 0) {
+				if (c == '\\') {
+					i++;
+				} else if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			switch (c) {
+			case '"':
+			case '\'':
+				quote = c;
+				break;
+			case '[':
+			case '{':
+				depth++;
+				break;
+			case ']':
+			case '}':
+				if (--depth == 0) {
+					if (c != ']') {
+						return null;
+					}
+					bounds[count++] = i;
+					return trim(bounds, count);
+				}
+				break;
+			case ',':
+				if (depth == 1 && i >= next && count < parts) {
+					bounds[count++] = i;
+					next = i + step;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		return null;
+	}
+
+	private static int[] trim(int[] bounds, int count) {
+		int[] ret = new int[count];
+		System.arraycopy(bounds, 0, ret, 0, count);
+		return ret;
+	}
+
+	private static boolean isWhiteSpace(char c) {
+		return c < 128 ? (CHAR_TYPES[c] & WHITESPACE) != 0 : Character
+				.isWhitespace(c);
+	}
+
+	/**
+	 * 待解析的输入，预扫描只关心ASCII的结构字符，字符数组和UTF-8字节以同一方式扫描
+	 */
+	abstract static class Input {
+		/**
+		 * 顶层数组开头'['的位置
+		 *
+		 * @return 顶层不是数组或不能并行解析时返回-1
+		 */
+		abstract int arrayStart();
+
+		abstract int length();
+
+		/**
+		 * 第i个字符或字节，UTF-8多字节字符的每个字节都不小于0x80，不会被当作结构字符
+		 *
+		 * @param i
+		 * @return
+		 */
+		abstract int charAt(int i);
+
+		/**
+		 * 串行解析整个输入
+		 *
+		 * @return
+		 */
+		abstract Object deserialize();
+
+		/**
+		 * 解析(from, to)之间的数组元素，见{@link JsonLexer#elements(int, boolean)}
+		 *
+		 * @param from
+		 * @param to
+		 * @param last
+		 * @return
+		 */
+		abstract List<Object> elements(int from, int to, boolean last);
+	}
+
+	private static final class CharInput extends Input {
+		private final char[] buf;
+
+		CharInput(char[] buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		int arrayStart() {
+			int start = 0;
+			while (start < buf.length && isWhiteSpace(buf[start])) {
+				start++;
+			}
+			return start < buf.length && buf[start] == '[' ? start : -1;
+		}
+
+		@Override
+		int length() {
+			return buf.length;
+		}
+
+		@Override
+		int charAt(int i) {
+			return buf[i];
+		}
+
+		@Override
+		Object deserialize() {
+			return new JsonDeserializer().deserialize(new String(buf));
+		}
+
+		@Override
+		List<Object> elements(int from, int to, boolean last) {
+			return new JsonDeserializer().elements(buf, from, to, last);
+		}
+	}
+
+	private static final class ByteInput extends Input {
+		private final byte[] bytes;
+
+		ByteInput(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		int arrayStart() {
+			// UTF-16和UTF-32的开头含有零字节
+			for (int i = 0; i < 4 && i < bytes.length; i++) {
+				if (bytes[i] == 0) {
+					return -1;
+				}
+			}
+
+			int start = 0;
+			// UTF-8的BOM
+			if (bytes.length >= 3 && bytes[0] == (byte) 0xEF
+					&& bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF) {
+				start = 3;
+			}
+			while (start < bytes.length && bytes[start] >= 0
+					&& isWhiteSpace((char) bytes[start])) {
+				start++;
+			}
+			return start < bytes.length && bytes[start] == '[' ? start : -1;
+		}
+
+		@Override
+		int length() {
+			return bytes.length;
+		}
+
+		@Override
+		int charAt(int i) {
+			return bytes[i];
+		}
+
+		@Override
+		Object deserialize() {
+			return new JsonByteDeserializer().deserialize(bytes, 0,
+					bytes.length);
+		}
+
+		@Override
+		List<Object> elements(int from, int to, boolean last) {
+			return new JsonByteDeserializer().elements(bytes, from, to, last);
+		}
+	}
+}
@@ -15,10 +15,14 @@
  */
 package commons.json;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -35,13 +39,79 @@ final class Reflector {
 			| Modifier.PRIVATE;
 
 	/**
-	 * 获取目标对象的所有字段
+	 * 字段类型：引用类型
+	 */
+	static final int OBJECT = 0;
+	/**
+	 * 字段类型：int、short、byte
+	 */
+	static final int INT = 1;
+	/**
+	 * 字段类型：long
+	 */
+	static final int LONG = 2;
+	/**
+	 * 字段类型：float
+	 */
+	static final int FLOAT = 3;
+	/**
+	 * 字段类型：double
+	 */
+	static final int DOUBLE = 4;
+	/**
+	 * 字段类型：boolean
+	 */
+	static final int BOOLEAN = 5;
+	/**
+	 * 字段类型：char
+	 */
+	static final int CHAR = 6;
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * 每个类的字段，只解析一次
+	 */
+	private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> type) {
+			return type.getFields();
+		}
+	};
+
+	/**
+	 * 每个类的属性描述，只解析一次，各线程共享
+	 */
+	private static final ClassValue<Property[]> PROPERTIES = new ClassValue<Property[]>() {
+		@Override
+		protected Property[] computeValue(Class<?> type) {
+			Field[] fields = FIELDS.get(type);
+			Property[] properties = new Property[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				properties[i] = new Property(fields[i]);
+			}
+			return properties;
+		}
+	};
+
+	/**
+	 * 获取目标对象的所有字段，返回的数组为共享缓存，不可修改
 	 * 
 	 * @param src
 	 * @return
 	 */
 	public static Field[] getFields(Object src) {
-		return src.getClass().getFields();
+		return FIELDS.get(src.getClass());
+	}
+
+	/**
+	 * 获取类型的所有属性描述，返回的数组为共享缓存，不可修改
+	 * 
+	 * @param type
+	 * @return
+	 */
+	static Property[] getProperties(Class<?> type) {
+		return PROPERTIES.get(type);
 	}
 
 
@@ -93,4 +163,173 @@ final class Reflector {
 		return m != null && Modifier.isPublic(m.getModifiers());
 	}
 
+	/**
+	 * 属性描述，持有预先解析好的字段访问句柄
+	 */
+	static final class Property {
+		/**
+		 * 属性名
+		 */
+		final String name;
+
+		/**
+		 * 转义后的属性名片段<code>"name":</code>，序列化时一次写入
+		 */
+		final char[] nameChars;
+
+		/**
+		 * 属性名片段的UTF-8编码
+		 */
+		final byte[] nameBytes;
+
+		/**
+		 * 字段类型
+		 */
+		final int kind;
+
+		/**
+		 * 对应字段
+		 */
+		final Field field;
+
+		/**
+		 * 读取句柄，签名为(Object)对应基本类型或(Object)Object
+		 */
+		private final MethodHandle getter;
+
+		/**
+		 * 装箱读取句柄，签名为(Object)Object
+		 */
+		private final MethodHandle boxedGetter;
+
+		Property(Field field) {
+			this.field = field;
+			this.name = field.getName();
+			String fragment = JsonWriter.nameFragment(name);
+			this.nameChars = fragment.toCharArray();
+			this.nameBytes = fragment.getBytes(StandardCharsets.UTF_8);
+			this.kind = kindOf(field.getType());
+
+			try {
+				setAccessibleWorkaround(field);
+				if (!field.isAccessible()) {
+					field.setAccessible(true);
+				}
+				MethodHandle handle = LOOKUP.unreflectGetter(field);
+				if (Modifier.isStatic(field.getModifiers())) {
+					// 静态字段忽略目标对象
+					handle = MethodHandles.dropArguments(handle, 0, Object.class);
+				}
+				this.getter = handle.asType(MethodType.methodType(
+						handleType(kind), Object.class));
+				this.boxedGetter = handle.asType(MethodType.methodType(
+						Object.class, Object.class));
+			} catch (IllegalAccessException e) {
+				throw new JsonException(e);
+			}
+		}
+
+		Object get(Object target) {
+			try {
+				return (Object) boxedGetter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		int getInt(Object target) {
+			try {
+				return (int) getter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		long getLong(Object target) {
+			try {
+				return (long) getter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		float getFloat(Object target) {
+			try {
+				return (float) getter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		double getDouble(Object target) {
+			try {
+				return (double) getter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		boolean getBoolean(Object target) {
+			try {
+				return (boolean) getter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		char getChar(Object target) {
+			try {
+				return (char) getter.invokeExact(target);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+
+		static int kindOf(Class<?> type) {
+			if (type == int.class || type == short.class || type == byte.class) {
+				return INT;
+			} else if (type == long.class) {
+				return LONG;
+			} else if (type == float.class) {
+				return FLOAT;
+			} else if (type == double.class) {
+				return DOUBLE;
+			} else if (type == boolean.class) {
+				return BOOLEAN;
+			} else if (type == char.class) {
+				return CHAR;
+			}
+			return OBJECT;
+		}
+
+		static Class<?> handleType(int kind) {
+			switch (kind) {
+			case INT:
+				return int.class;
+			case LONG:
+				return long.class;
+			case FLOAT:
+				return float.class;
+			case DOUBLE:
+				return double.class;
+			case BOOLEAN:
+				return boolean.class;
+			case CHAR:
+				return char.class;
+			default:
+				return Object.class;
+			}
+		}
+
+		static RuntimeException rethrow(Throwable e) {
+			if (e instanceof RuntimeException) {
+				return (RuntimeException) e;
+			}
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+			return new JsonException(e);
+		}
+	}
+
 }
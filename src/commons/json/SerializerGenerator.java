@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 序列化器生成器
+ * <p>
+ * 首次使用时为每个普通Java对象类型生成专用的{@link JsonCodec}隐藏类：属性名片段作为常量写入，
+ * 基本类型字段直接读取输出，不做装箱。生成失败的类型退回反射方式序列化。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class SerializerGenerator {
+
+	/**
+	 * 是否开启生成，默认为false
+	 */
+	private static volatile boolean enabled = false;
+
+	/**
+	 * 生成失败的标记
+	 */
+	private static final Object FAILED = new Object();
+
+	/**
+	 * 每个类型只生成一次
+	 */
+	private static final ClassValue<Object> CODECS = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> type) {
+			try {
+				return generate(type);
+			} catch (Throwable e) {
+				return FAILED;
+			}
+		}
+	};
+
+	private static final String OBJECT = "java/lang/Object";
+	private static final String CODEC = "commons/json/JsonCodec";
+	private static final String WRITER = "commons/json/JsonWriter";
+	private static final String SERIALIZER = "commons/json/JsonSerializer";
+
+	private SerializerGenerator() {
+	}
+
+	static boolean isEnabled() {
+		return enabled;
+	}
+
+	static void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+
+	/**
+	 * 获取类型对应的生成序列化器
+	 *
+	 * @param type
+	 * @return 生成失败时返回null
+	 */
+	static JsonCodec<Object> codecFor(Class<?> type) {
+		Object codec = CODECS.get(type);
+		return codec == FAILED ? null : (JsonCodec<Object>) codec;
+	}
+
+	/**
+	 * 生成并定义隐藏类
+	 *
+	 * @param type
+	 * @return
+	 * @throws Throwable
+	 */
+	private static Object generate(Class<?> type) throws Throwable {
+		if (!isGeneratable(type)) {
+			return FAILED;
+		}
+		MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type,
+				MethodHandles.lookup());
+		byte[] bytes = new ClassWriter(type, Reflector.getProperties(type))
+				.toByteArray();
+		MethodHandles.Lookup codecLookup = lookup.defineHiddenClass(bytes, true);
+		return codecLookup.findConstructor(codecLookup.lookupClass(),
+				MethodType.methodType(void.class)).invoke();
+	}
+
+	/**
+	 * 生成的类定义在目标类所在的包和类加载器中，须保证能够访问本库及所有字段
+	 *
+	 * @param type
+	 * @return
+	 */
+	private static boolean isGeneratable(Class<?> type) {
+		if (type.isArray() || type.isPrimitive() || type.isInterface()
+				|| type.isHidden()) {
+			return false;
+		}
+		ClassLoader loader = type.getClassLoader();
+		if (loader == null) {
+			return false;
+		}
+		try {
+			if (Class.forName(JsonCodec.class.getName(), false, loader) != JsonCodec.class) {
+				return false;
+			}
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+		for (Reflector.Property property : Reflector.getProperties(type)) {
+			Class<?> owner = property.field.getDeclaringClass();
+			if (!Modifier.isPublic(owner.getModifiers())
+					&& (owner.getClassLoader() != loader || !owner
+							.getPackageName().equals(type.getPackageName()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 预先生成的属性名片段，如<code>{"name":</code>和<code>,"age":</code>
+	 *
+	 * @param properties
+	 * @param index
+	 * @return
+	 */
+	static String nameFragment(Reflector.Property[] properties, int index) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(index == 0 ? '{' : ',');
+		sb.append(properties[index].nameChars);
+		return sb.toString();
+	}
+
+	/**
+	 * 最简类文件输出器，生成的方法不含分支，因此不需要StackMapTable
+	 */
+	private static final class ClassWriter {
+
+		private final Class<?> type;
+		private final Reflector.Property[] properties;
+
+		private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+		private final DataOutputStream poolOut = new DataOutputStream(pool);
+		private final Map<String, Integer> entries = new HashMap<String, Integer>();
+		private int poolSize = 1;
+
+		ClassWriter(Class<?> type, Reflector.Property[] properties) {
+			this.type = type;
+			this.properties = properties;
+		}
+
+		byte[] toByteArray() throws IOException {
+			String owner = internalName(type);
+			String packagePrefix = owner.lastIndexOf('/') < 0 ? "" : owner
+					.substring(0, owner.lastIndexOf('/') + 1);
+			int thisClass = classRef(packagePrefix + "JsonCodec$$"
+					+ type.getSimpleName());
+			int superClass = classRef(OBJECT);
+			int codecInterface = classRef(CODEC);
+
+			byte[] init = initCode();
+			byte[] write = writeCode(owner);
+
+			int initName = utf8("<init>");
+			int initDesc = utf8("()V");
+			int writeName = utf8("write");
+			int writeDesc = utf8("(Ljava/lang/Object;L" + WRITER + ";L"
+					+ SERIALIZER + ";)V");
+			int codeName = utf8("Code");
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52);
+			out.writeShort(poolSize);
+			poolOut.flush();
+			pool.writeTo(out);
+			out.writeShort(0x0010 | 0x0020); // ACC_FINAL | ACC_SUPER
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(codecInterface);
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+			writeMethod(out, initName, initDesc, codeName, 1, 1, init);
+			writeMethod(out, writeName, writeDesc, codeName, 3, 5, write);
+			out.writeShort(0); // attributes
+			out.flush();
+			return bytes.toByteArray();
+		}
+
+		private void writeMethod(DataOutputStream out, int name, int desc,
+				int codeName, int maxStack, int maxLocals, byte[] code)
+				throws IOException {
+			out.writeShort(0x0001); // ACC_PUBLIC
+			out.writeShort(name);
+			out.writeShort(desc);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			out.writeInt(12 + code.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // attributes
+		}
+
+		private byte[] initCode() throws IOException {
+			Code code = new Code();
+			code.op(0x2a); // aload_0
+			code.op(0xb7, methodRef(OBJECT, "<init>", "()V")); // invokespecial
+			code.op(0xb1); // return
+			return code.toByteArray();
+		}
+
+		private byte[] writeCode(String owner) throws IOException {
+			Code code = new Code();
+			int write = methodRef(WRITER, "write", "(Ljava/lang/CharSequence;)V");
+
+			code.op(0x2b); // aload_1
+			code.op(0xc0, classRef(owner)); // checkcast
+			code.op(0x3a);
+			code.u1(4); // astore 4
+
+			for (int i = 0; i < properties.length; i++) {
+				Reflector.Property property = properties[i];
+				Field field = property.field;
+
+				code.op(0x2c); // aload_2
+				code.op(0x13, stringRef(nameFragment(properties, i))); // ldc_w
+				code.op(0xb6, write); // invokevirtual
+
+				code.op(property.kind == Reflector.OBJECT ? 0x2d : 0x2c); // aload_3 / aload_2
+				int fieldRef = fieldRef(internalName(field.getDeclaringClass()),
+						field.getName(), descriptor(field.getType()));
+				if (Modifier.isStatic(field.getModifiers())) {
+					code.op(0xb2, fieldRef); // getstatic
+				} else {
+					code.op(0x19);
+					code.u1(4); // aload 4
+					code.op(0xb4, fieldRef); // getfield
+				}
+
+				switch (property.kind) {
+				case Reflector.INT:
+					code.op(0x85); // i2l
+					code.op(0xb6, methodRef(WRITER, "writeNumber", "(J)V"));
+					break;
+				case Reflector.LONG:
+					code.op(0xb6, methodRef(WRITER, "writeNumber", "(J)V"));
+					break;
+				case Reflector.FLOAT:
+					code.op(0xb6, methodRef(WRITER, "writeNumber", "(F)V"));
+					break;
+				case Reflector.DOUBLE:
+					code.op(0xb6, methodRef(WRITER, "writeNumber", "(D)V"));
+					break;
+				case Reflector.BOOLEAN:
+					code.op(0xb6, methodRef(WRITER, "writeBoolean", "(Z)V"));
+					break;
+				case Reflector.CHAR:
+					code.op(0xb8, methodRef("java/lang/String", "valueOf",
+							"(C)Ljava/lang/String;")); // invokestatic
+					code.op(0xb6, methodRef(WRITER, "writeString",
+							"(Ljava/lang/CharSequence;)V"));
+					break;
+				default:
+					code.op(0xb6, methodRef(SERIALIZER, "write",
+							"(Ljava/lang/Object;)V"));
+				}
+			}
+
+			code.op(0x2c); // aload_2
+			code.op(0x13, stringRef(properties.length == 0 ? "{}" : "}"));
+			code.op(0xb6, write);
+			code.op(0xb1); // return
+			return code.toByteArray();
+		}
+
+		private int utf8(String value) throws IOException {
+			String key = "U" + value;
+			Integer index = entries.get(key);
+			if (index == null) {
+				poolOut.writeByte(1);
+				poolOut.writeUTF(value);
+				index = poolSize++;
+				entries.put(key, index);
+			}
+			return index;
+		}
+
+		private int classRef(String internalName) throws IOException {
+			return ref("C" + internalName, 7, utf8(internalName), -1);
+		}
+
+		private int stringRef(String value) throws IOException {
+			return ref("S" + value, 8, utf8(value), -1);
+		}
+
+		private int nameAndType(String name, String desc) throws IOException {
+			return ref("N" + name + ':' + desc, 12, utf8(name), utf8(desc));
+		}
+
+		private int fieldRef(String owner, String name, String desc)
+				throws IOException {
+			return ref("F" + owner + '.' + name + ':' + desc, 9,
+					classRef(owner), nameAndType(name, desc));
+		}
+
+		private int methodRef(String owner, String name, String desc)
+				throws IOException {
+			return ref("M" + owner + '.' + name + desc, 10, classRef(owner),
+					nameAndType(name, desc));
+		}
+
+		private int ref(String key, int tag, int first, int second)
+				throws IOException {
+			Integer index = entries.get(key);
+			if (index == null) {
+				poolOut.writeByte(tag);
+				poolOut.writeShort(first);
+				if (second >= 0) {
+					poolOut.writeShort(second);
+				}
+				index = poolSize++;
+				entries.put(key, index);
+			}
+			return index;
+		}
+
+		private static String internalName(Class<?> type) {
+			return type.getName().replace('.', '/');
+		}
+
+		private static String descriptor(Class<?> type) {
+			if (type == int.class) {
+				return "I";
+			} else if (type == long.class) {
+				return "J";
+			} else if (type == short.class) {
+				return "S";
+			} else if (type == byte.class) {
+				return "B";
+			} else if (type == char.class) {
+				return "C";
+			} else if (type == float.class) {
+				return "F";
+			} else if (type == double.class) {
+				return "D";
+			} else if (type == boolean.class) {
+				return "Z";
+			} else if (type.isArray()) {
+				return internalName(type);
+			}
+			return "L" + internalName(type) + ";";
+		}
+	}
+
+	/**
+	 * 方法字节码缓冲
+	 */
+	private static final class Code extends ByteArrayOutputStream {
+
+		void u1(int value) {
+			write(value);
+		}
+
+		void op(int opcode) {
+			write(opcode);
+		}
+
+		void op(int opcode, int index) {
+			write(opcode);
+			write(index >> 8);
+			write(index);
+		}
+	}
+}
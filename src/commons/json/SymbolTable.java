@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 属性名规范化表，相同的属性名在所有解析器间共享同一个String实例
+ * <p>
+ * 按散列值直接映射的有界表，冲突时覆盖旧项。槽位中只有不可变的String，多线程无锁读写是安全的，
+ * 最坏情况只是重复创建字符串。命中时不分配对象，返回的String已缓存散列值。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class SymbolTable {
+
+	/**
+	 * 参与规范化的属性名最大长度，更长的属性名很少重复
+	 */
+	static final int MAX_LENGTH = 32;
+
+	private static final int SIZE = 1024;
+
+	private static final String[] SYMBOLS = new String[SIZE];
+
+	private SymbolTable() {
+	}
+
+	/**
+	 * 查找buf中的属性名
+	 *
+	 * @param buf
+	 * @param start
+	 * @param len
+	 *            不大于{@link #MAX_LENGTH}
+	 * @param hash
+	 *            与String.hashCode算法相同的散列值
+	 * @return 规范化的字符串
+	 */
+	static String lookup(char[] buf, int start, int len, int hash) {
+		int index = index(hash);
+		String symbol = SYMBOLS[index];
+		if (symbol != null && symbol.hashCode() == hash
+				&& symbol.length() == len) {
+			int i = 0;
+			while (i < len && symbol.charAt(i) == buf[start + i]) {
+				i++;
+			}
+			if (i == len) {
+				return symbol;
+			}
+		}
+		return add(index, new String(buf, start, len));
+	}
+
+	/**
+	 * 查找buf中的ASCII属性名
+	 *
+	 * @param buf
+	 * @param start
+	 * @param len
+	 *            不大于{@link #MAX_LENGTH}
+	 * @param hash
+	 *            与String.hashCode算法相同的散列值
+	 * @return 规范化的字符串
+	 */
+	static String lookup(byte[] buf, int start, int len, int hash) {
+		int index = index(hash);
+		String symbol = SYMBOLS[index];
+		if (symbol != null && symbol.hashCode() == hash
+				&& symbol.length() == len) {
+			int i = 0;
+			while (i < len && symbol.charAt(i) == buf[start + i]) {
+				i++;
+			}
+			if (i == len) {
+				return symbol;
+			}
+		}
+		return add(index, new String(buf, start, len,
+				StandardCharsets.ISO_8859_1));
+	}
+
+	private static int index(int hash) {
+		return (hash ^ (hash >>> 10)) & (SIZE - 1);
+	}
+
+	private static String add(int index, String symbol) {
+		// 预先计算散列值，之后放入HashMap时不再逐字符计算
+		symbol.hashCode();
+		SYMBOLS[index] = symbol;
+		return symbol;
+	}
+}
@@ -0,0 +1,932 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import static commons.json.Reflector.Property.handleType;
+import static commons.json.Reflector.Property.kindOf;
+import static commons.json.Reflector.Property.rethrow;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 类型绑定器，从{@link JsonReader}直接读取目标类型的值，不构建中间的Map和List
+ * <p>
+ * 每个类型的绑定器只创建一次并缓存，构造函数和setter预先解析为MethodHandle。
+ * 基本类型的字段通过对应签名的句柄写入，不做装箱。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+abstract class TypeBinder {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	/**
+	 * 每个类型的绑定器
+	 */
+	private static final ConcurrentMap<Type, TypeBinder> BINDERS = new ConcurrentHashMap<Type, TypeBinder>();
+
+	/**
+	 * 不指定类型时，与{@link Json#deserialize(String)}一样读取为Map、List、Long、Double等
+	 */
+	static final TypeBinder UNTYPED = new TypeBinder() {
+		@SuppressWarnings("unchecked")
+		@Override
+		Object read(JsonReader reader) {
+			switch (reader.peek()) {
+			case BEGIN_OBJECT:
+				Map map = new HashMap();
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					map.put(name, read(reader));
+				}
+				reader.endObject();
+				return map;
+			case BEGIN_ARRAY:
+				List list = new ArrayList();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					list.add(read(reader));
+				}
+				reader.endArray();
+				return list;
+			case STRING:
+				return reader.nextString();
+			case NUMBER:
+				return reader.nextNumber();
+			case BOOLEAN:
+				return Boolean.valueOf(reader.nextBoolean());
+			case NULL:
+				reader.nextNull();
+				return null;
+			default:
+				throw new JsonException("期望值，实际为" + reader.peek());
+			}
+		}
+	};
+
+	/**
+	 * 读取一个值
+	 *
+	 * @param reader
+	 * @return
+	 * @throws JsonException
+	 */
+	abstract Object read(JsonReader reader);
+
+	/**
+	 * 获取类型的绑定器
+	 *
+	 * @param type
+	 * @return
+	 * @throws JsonException
+	 *             不支持的类型
+	 */
+	static TypeBinder of(Type type) {
+		TypeBinder binder = BINDERS.get(type);
+		if (binder == null) {
+			binder = create(type);
+			TypeBinder existing = BINDERS.putIfAbsent(type, binder);
+			if (existing != null) {
+				binder = existing;
+			}
+		}
+		return binder;
+	}
+
+	private static TypeBinder create(Type type) {
+		if (type instanceof WildcardType) {
+			return of(((WildcardType) type).getUpperBounds()[0]);
+		} else if (type instanceof TypeVariable) {
+			return of(((TypeVariable<?>) type).getBounds()[0]);
+		} else if (type instanceof GenericArrayType) {
+			Type component = ((GenericArrayType) type).getGenericComponentType();
+			return new ArrayBinder(rawType(component), of(component));
+		}
+
+		if (type instanceof Class) {
+			GeneratedCodec<?> codec = CodecRegistry.generated((Class<?>) type);
+			if (codec != null) {
+				return new GeneratedBinder(codec);
+			}
+		}
+
+		Class<?> raw = rawType(type);
+		if (raw == Object.class || raw == Number.class) {
+			return UNTYPED;
+		} else if (raw == String.class || raw == CharSequence.class) {
+			return new ScalarBinder(String.class);
+		} else if (raw.isPrimitive() || raw == Integer.class
+				|| raw == Long.class || raw == Short.class
+				|| raw == Byte.class || raw == Float.class
+				|| raw == Double.class || raw == Boolean.class
+				|| raw == Character.class || raw == BigInteger.class
+				|| raw == BigDecimal.class) {
+			return new ScalarBinder(raw);
+		} else if (raw.isEnum()) {
+			return new ScalarBinder(raw);
+		} else if (raw.isArray()) {
+			Class<?> component = raw.getComponentType();
+			if (component == int.class || component == long.class
+					|| component == double.class) {
+				return new PrimitiveArrayBinder(component);
+			}
+			return new ArrayBinder(component, of(component));
+		} else if (Collection.class.isAssignableFrom(raw)) {
+			return new CollectionBinder(raw, of(typeArgument(type, 0)));
+		} else if (Map.class.isAssignableFrom(raw)) {
+			return new MapBinder(raw, rawType(typeArgument(type, 0)),
+					of(typeArgument(type, 1)));
+		} else if (raw.isRecord()) {
+			return new RecordBinder(type, raw);
+		}
+		return new BeanBinder(type, raw);
+	}
+
+	static Class<?> rawType(Type type) {
+		if (type instanceof Class) {
+			return (Class<?>) type;
+		} else if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		} else if (type instanceof GenericArrayType) {
+			return Array.newInstance(
+					rawType(((GenericArrayType) type).getGenericComponentType()),
+					0).getClass();
+		} else if (type instanceof WildcardType) {
+			return rawType(((WildcardType) type).getUpperBounds()[0]);
+		} else if (type instanceof TypeVariable) {
+			return rawType(((TypeVariable<?>) type).getBounds()[0]);
+		}
+		throw new JsonException("不支持的类型:" + type);
+	}
+
+	/**
+	 * 泛型参数，未指定时为Object
+	 *
+	 * @param type
+	 * @param index
+	 * @return
+	 */
+	private static Type typeArgument(Type type, int index) {
+		if (type instanceof ParameterizedType) {
+			Type[] arguments = ((ParameterizedType) type)
+					.getActualTypeArguments();
+			if (index < arguments.length) {
+				return arguments[index];
+			}
+		}
+		return Object.class;
+	}
+
+	/**
+	 * 解析类型及其父类上的类型变量
+	 *
+	 * @param type
+	 * @param raw
+	 * @return
+	 */
+	private static Map<TypeVariable<?>, Type> typeVariables(Type type,
+			Class<?> raw) {
+		Map<TypeVariable<?>, Type> variables = new HashMap<TypeVariable<?>, Type>();
+		Type current = type;
+		Class<?> currentRaw = raw;
+		while (currentRaw != null && currentRaw != Object.class) {
+			if (current instanceof ParameterizedType) {
+				TypeVariable<?>[] parameters = currentRaw.getTypeParameters();
+				Type[] arguments = ((ParameterizedType) current)
+						.getActualTypeArguments();
+				for (int i = 0; i < parameters.length; i++) {
+					variables.put(parameters[i], resolve(arguments[i],
+							variables));
+				}
+			}
+			current = currentRaw.getGenericSuperclass();
+			currentRaw = currentRaw.getSuperclass();
+		}
+		return variables;
+	}
+
+	private static Type resolve(Type type, Map<TypeVariable<?>, Type> variables) {
+		if (type instanceof TypeVariable) {
+			Type resolved = variables.get(type);
+			return resolved != null ? resolved : type;
+		} else if (type instanceof ParameterizedType) {
+			ParameterizedType parameterized = (ParameterizedType) type;
+			Type[] arguments = parameterized.getActualTypeArguments().clone();
+			boolean changed = false;
+			for (int i = 0; i < arguments.length; i++) {
+				Type resolved = resolve(arguments[i], variables);
+				changed |= resolved != arguments[i];
+				arguments[i] = resolved;
+			}
+			return changed ? new ParameterizedTypeImpl(parameterized
+					.getRawType(), arguments, parameterized.getOwnerType())
+					: type;
+		} else if (type instanceof GenericArrayType) {
+			Type component = resolve(((GenericArrayType) type)
+					.getGenericComponentType(), variables);
+			if (component instanceof Class) {
+				return Array.newInstance((Class<?>) component, 0).getClass();
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * 无参构造函数的句柄，签名为()Object；接口和抽象类使用常见的实现类
+	 *
+	 * @param raw
+	 * @param implementations
+	 *            依次尝试的实现类
+	 * @return 没有可用的构造函数时返回null
+	 */
+	private static MethodHandle constructor(Class<?> raw,
+			Class<?>... implementations) {
+		Class<?> type = raw;
+		if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+			type = null;
+			for (Class<?> implementation : implementations) {
+				if (raw.isAssignableFrom(implementation)) {
+					type = implementation;
+					break;
+				}
+			}
+			if (type == null) {
+				return null;
+			}
+		}
+		try {
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return LOOKUP.unreflectConstructor(constructor).asType(
+					MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			throw new JsonException(e);
+		} catch (RuntimeException e) {
+			// 模块未开放等原因无法访问
+			return null;
+		}
+	}
+
+	private static Object newInstance(MethodHandle constructor, Class<?> raw) {
+		if (constructor == null) {
+			throw new JsonException("没有可用的无参构造函数:" + raw.getName());
+		}
+		try {
+			return (Object) constructor.invokeExact();
+		} catch (Throwable e) {
+			throw rethrow(e);
+		}
+	}
+
+	/**
+	 * 字符串、数字、布尔值和枚举
+	 */
+	private static final class ScalarBinder extends TypeBinder {
+		private final Class<?> type;
+
+		ScalarBinder(Class<?> type) {
+			this.type = type;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			Class<?> type = this.type;
+			if (type == String.class) {
+				return reader.nextString();
+			} else if (type == int.class || type == Integer.class) {
+				return Integer.valueOf(reader.nextInt());
+			} else if (type == long.class || type == Long.class) {
+				return Long.valueOf(reader.nextLong());
+			} else if (type == double.class || type == Double.class) {
+				return Double.valueOf(reader.nextDouble());
+			} else if (type == boolean.class || type == Boolean.class) {
+				return Boolean.valueOf(reader.nextBoolean());
+			} else if (type == float.class || type == Float.class) {
+				return Float.valueOf((float) reader.nextDouble());
+			} else if (type == short.class || type == Short.class) {
+				return Short.valueOf((short) nextInt(reader, Short.MIN_VALUE,
+						Short.MAX_VALUE));
+			} else if (type == byte.class || type == Byte.class) {
+				return Byte.valueOf((byte) nextInt(reader, Byte.MIN_VALUE,
+						Byte.MAX_VALUE));
+			} else if (type == char.class || type == Character.class) {
+				return Character.valueOf(charValue(reader.nextString()));
+			} else if (type == BigDecimal.class) {
+				return bigDecimalValue(reader.nextNumber());
+			} else if (type == BigInteger.class) {
+				Number value = reader.nextNumber();
+				if (value instanceof BigInteger) {
+					return value;
+				} else if (value instanceof Long) {
+					return BigInteger.valueOf(value.longValue());
+				}
+				try {
+					return bigDecimalValue(value).toBigIntegerExact();
+				} catch (ArithmeticException e) {
+					throw new JsonException("不是整数:" + value);
+				}
+			}
+
+			String name = reader.nextString();
+			try {
+				return Enum.valueOf((Class<Enum>) type, name);
+			} catch (IllegalArgumentException e) {
+				throw new JsonException("非法的枚举值:" + name, e);
+			}
+		}
+	}
+
+	/**
+	 * 读取short、byte等窄于int的整数，超出范围时抛出异常而不是截断
+	 *
+	 * @param reader
+	 * @param min
+	 * @param max
+	 * @return
+	 * @throws JsonException
+	 */
+	static int nextInt(JsonReader reader, int min, int max) {
+		int value = reader.nextInt();
+		if (value < min || value > max) {
+			throw new JsonException("数值超出范围[" + min + "," + max + "]:"
+					+ value);
+		}
+		return value;
+	}
+
+	static BigDecimal bigDecimalValue(Number value) {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		} else if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		} else if (value instanceof Long) {
+			return BigDecimal.valueOf(value.longValue());
+		}
+		return BigDecimal.valueOf(value.doubleValue());
+	}
+
+	static char charValue(String value) {
+		if (value.length() != 1) {
+			throw new JsonException("期望单个字符:" + value);
+		}
+		return value.charAt(0);
+	}
+
+	/**
+	 * int[]、long[]、double[]，元素直接写入数组，不做装箱
+	 */
+	private static final class PrimitiveArrayBinder extends TypeBinder {
+		private final Class<?> component;
+
+		PrimitiveArrayBinder(Class<?> component) {
+			this.component = component;
+		}
+
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			reader.beginArray();
+			int size = 0;
+			Object ret;
+			if (component == int.class) {
+				int[] array = new int[16];
+				while (reader.hasNext()) {
+					if (size == array.length) {
+						array = Arrays.copyOf(array, size * 2);
+					}
+					array[size++] = reader.nextInt();
+				}
+				ret = Arrays.copyOf(array, size);
+			} else if (component == long.class) {
+				long[] array = new long[16];
+				while (reader.hasNext()) {
+					if (size == array.length) {
+						array = Arrays.copyOf(array, size * 2);
+					}
+					array[size++] = reader.nextLong();
+				}
+				ret = Arrays.copyOf(array, size);
+			} else {
+				double[] array = new double[16];
+				while (reader.hasNext()) {
+					if (size == array.length) {
+						array = Arrays.copyOf(array, size * 2);
+					}
+					array[size++] = reader.nextDouble();
+				}
+				ret = Arrays.copyOf(array, size);
+			}
+			reader.endArray();
+			return ret;
+		}
+	}
+
+	/**
+	 * 其他数组
+	 */
+	private static final class ArrayBinder extends TypeBinder {
+		private final Class<?> component;
+		private final TypeBinder element;
+
+		ArrayBinder(Class<?> component, TypeBinder element) {
+			this.component = component;
+			this.element = element;
+		}
+
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			List<Object> list = new ArrayList<Object>();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				list.add(element.read(reader));
+			}
+			reader.endArray();
+
+			Object array = Array.newInstance(component, list.size());
+			for (int i = 0; i < list.size(); i++) {
+				Array.set(array, i, list.get(i));
+			}
+			return array;
+		}
+	}
+
+	/**
+	 * 集合，接口类型使用ArrayList、HashSet、TreeSet或LinkedList
+	 */
+	private static final class CollectionBinder extends TypeBinder {
+		private final Class<?> raw;
+		private final MethodHandle constructor;
+		private final TypeBinder element;
+
+		CollectionBinder(Class<?> raw, TypeBinder element) {
+			this.raw = raw;
+			this.constructor = constructor(raw, ArrayList.class,
+					HashSet.class, TreeSet.class, LinkedList.class);
+			this.element = element;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			Collection<Object> collection = (Collection<Object>) newInstance(
+					constructor, raw);
+			reader.beginArray();
+			while (reader.hasNext()) {
+				collection.add(element.read(reader));
+			}
+			reader.endArray();
+			return collection;
+		}
+	}
+
+	/**
+	 * Map，接口类型使用HashMap、TreeMap或ConcurrentHashMap；键可以是字符串、枚举或数字
+	 */
+	private static final class MapBinder extends TypeBinder {
+		private final Class<?> raw;
+		private final MethodHandle constructor;
+		private final Class<?> keyType;
+		private final TypeBinder value;
+
+		MapBinder(Class<?> raw, Class<?> keyType, TypeBinder value) {
+			this.raw = raw;
+			this.constructor = constructor(raw, HashMap.class, TreeMap.class,
+					ConcurrentHashMap.class);
+			this.keyType = keyType;
+			this.value = value;
+
+			if (keyType != String.class && keyType != Object.class
+					&& keyType != CharSequence.class && !keyType.isEnum()
+					&& keyType != Integer.class && keyType != Long.class
+					&& keyType != Double.class && keyType != Boolean.class) {
+				throw new JsonException("不支持的Map键类型:" + keyType.getName());
+			}
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Object key(String name) {
+			Class<?> keyType = this.keyType;
+			try {
+				if (keyType.isEnum()) {
+					return Enum.valueOf((Class<Enum>) keyType, name);
+				} else if (keyType == Integer.class) {
+					return Integer.valueOf(name);
+				} else if (keyType == Long.class) {
+					return Long.valueOf(name);
+				} else if (keyType == Double.class) {
+					return Double.valueOf(name);
+				} else if (keyType == Boolean.class) {
+					return Boolean.valueOf(name);
+				}
+			} catch (IllegalArgumentException e) {
+				throw new JsonException("非法的Map键:" + name, e);
+			}
+			return name;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			Map<Object, Object> map = (Map<Object, Object>) newInstance(
+					constructor, raw);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				Object key = key(reader.nextName());
+				map.put(key, value.read(reader));
+			}
+			reader.endObject();
+			return map;
+		}
+	}
+
+	/**
+	 * 普通Java对象，通过无参构造函数创建，再由setter或public字段写入属性，未知属性被跳过
+	 */
+	private static final class BeanBinder extends TypeBinder {
+		private final Class<?> raw;
+		private final MethodHandle constructor;
+		private final Map<String, BeanProperty> properties = new HashMap<String, BeanProperty>();
+
+		BeanBinder(Type type, Class<?> raw) {
+			this.raw = raw;
+			this.constructor = constructor(raw);
+
+			Map<TypeVariable<?>, Type> variables = typeVariables(type, raw);
+			try {
+				for (Field field : raw.getFields()) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers)
+							|| Modifier.isFinal(modifiers)) {
+						continue;
+					}
+					field.setAccessible(true);
+					properties.put(field.getName(), new BeanProperty(
+							field.getType(), resolve(field.getGenericType(),
+									variables), LOOKUP.unreflectSetter(field)));
+				}
+				// setter优先于同名字段
+				for (Method method : raw.getMethods()) {
+					String name = method.getName();
+					if (Modifier.isStatic(method.getModifiers())
+							|| method.getParameterCount() != 1
+							|| name.length() <= 3 || !name.startsWith("set")) {
+						continue;
+					}
+					method.setAccessible(true);
+					properties.put(propertyName(name), new BeanProperty(method
+							.getParameterTypes()[0], resolve(method
+							.getGenericParameterTypes()[0], variables), LOOKUP
+							.unreflect(method)));
+				}
+			} catch (IllegalAccessException e) {
+				throw new JsonException(e);
+			}
+		}
+
+		private static String propertyName(String setter) {
+			String name = setter.substring(3);
+			if (name.length() > 1 && Character.isUpperCase(name.charAt(1))) {
+				return name;
+			}
+			return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+		}
+
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			Object target = newInstance(constructor, raw);
+			reader.beginObject();
+			while (reader.hasNext()) {
+				BeanProperty property = properties.get(reader.nextName());
+				if (property == null) {
+					reader.skipValue();
+				} else {
+					property.read(reader, target);
+				}
+			}
+			reader.endObject();
+			return target;
+		}
+	}
+
+	/**
+	 * 编译期生成的编解码器，只用于类型本身，不作用于子类型和带泛型参数的类型
+	 */
+	private static final class GeneratedBinder extends TypeBinder {
+		private final GeneratedCodec<?> codec;
+
+		GeneratedBinder(GeneratedCodec<?> codec) {
+			this.codec = codec;
+		}
+
+		@Override
+		Object read(JsonReader reader) {
+			return codec.read(reader);
+		}
+	}
+
+	/**
+	 * 可写的属性
+	 */
+	private static final class BeanProperty {
+		/**
+		 * 属性类型，见{@link Reflector#INT}等
+		 */
+		private final int kind;
+
+		/**
+		 * 写入句柄，签名为(Object, 对应基本类型)void或(Object, Object)void
+		 */
+		private final MethodHandle setter;
+
+		private final Type type;
+
+		/**
+		 * INT类型属性的取值范围，short和byte窄于int
+		 */
+		private final int min;
+		private final int max;
+
+		/**
+		 * 引用类型属性的绑定器，首次使用时获取，以支持递归的类型
+		 */
+		private TypeBinder binder;
+
+		BeanProperty(Class<?> raw, Type type, MethodHandle setter) {
+			this.kind = kindOf(raw);
+			this.type = type;
+			if (raw == short.class) {
+				this.min = Short.MIN_VALUE;
+				this.max = Short.MAX_VALUE;
+			} else if (raw == byte.class) {
+				this.min = Byte.MIN_VALUE;
+				this.max = Byte.MAX_VALUE;
+			} else {
+				this.min = Integer.MIN_VALUE;
+				this.max = Integer.MAX_VALUE;
+			}
+			// explicitCastArguments允许int到short、byte的窄化，范围在读取时检查，返回值被丢弃
+			this.setter = MethodHandles.explicitCastArguments(setter
+					.asType(setter.type().changeReturnType(void.class)),
+					MethodType.methodType(void.class, Object.class,
+							handleType(kind)));
+		}
+
+		void read(JsonReader reader, Object target) {
+			if (kind != Reflector.OBJECT && reader.peek() == JsonToken.NULL) {
+				// 基本类型保留默认值
+				reader.nextNull();
+				return;
+			}
+
+			try {
+				switch (kind) {
+				case Reflector.INT:
+					setter.invokeExact(target, nextInt(reader, min, max));
+					break;
+				case Reflector.LONG:
+					setter.invokeExact(target, reader.nextLong());
+					break;
+				case Reflector.FLOAT:
+					setter.invokeExact(target, (float) reader.nextDouble());
+					break;
+				case Reflector.DOUBLE:
+					setter.invokeExact(target, reader.nextDouble());
+					break;
+				case Reflector.BOOLEAN:
+					setter.invokeExact(target, reader.nextBoolean());
+					break;
+				case Reflector.CHAR:
+					setter.invokeExact(target, charValue(reader.nextString()));
+					break;
+				default:
+					TypeBinder binder = this.binder;
+					if (binder == null) {
+						this.binder = binder = of(type);
+					}
+					setter.invokeExact(target, binder.read(reader));
+				}
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+	}
+
+	/**
+	 * record，收集全部组件后调用规范构造函数
+	 */
+	private static final class RecordBinder extends TypeBinder {
+		private final Class<?> raw;
+		/**
+		 * 规范构造函数，签名为(Object[])Object
+		 */
+		private final MethodHandle constructor;
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private final Type[] types;
+		private final TypeBinder[] binders;
+		/**
+		 * 缺少的组件使用的默认值
+		 */
+		private final Object[] defaults;
+
+		RecordBinder(Type type, Class<?> raw) {
+			this.raw = raw;
+
+			Map<TypeVariable<?>, Type> variables = typeVariables(type, raw);
+			RecordComponent[] components = raw.getRecordComponents();
+			Class<?>[] parameterTypes = new Class<?>[components.length];
+			this.types = new Type[components.length];
+			this.binders = new TypeBinder[components.length];
+			this.defaults = new Object[components.length];
+			for (int i = 0; i < components.length; i++) {
+				parameterTypes[i] = components[i].getType();
+				types[i] = resolve(components[i].getGenericType(), variables);
+				if (parameterTypes[i].isPrimitive()) {
+					defaults[i] = Array.get(Array.newInstance(
+							parameterTypes[i], 1), 0);
+				}
+				indexes.put(components[i].getName(), Integer.valueOf(i));
+			}
+
+			try {
+				Constructor<?> constructor = raw
+						.getDeclaredConstructor(parameterTypes);
+				constructor.setAccessible(true);
+				this.constructor = LOOKUP.unreflectConstructor(constructor)
+						.asSpreader(Object[].class, components.length).asType(
+								MethodType.methodType(Object.class,
+										Object[].class));
+			} catch (NoSuchMethodException e) {
+				throw new JsonException(e);
+			} catch (IllegalAccessException e) {
+				throw new JsonException(e);
+			}
+		}
+
+		@Override
+		Object read(JsonReader reader) {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return null;
+			}
+
+			Object[] arguments = defaults.clone();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				Integer index = indexes.get(reader.nextName());
+				if (index == null) {
+					reader.skipValue();
+					continue;
+				}
+				int i = index.intValue();
+				TypeBinder binder = binders[i];
+				if (binder == null) {
+					binders[i] = binder = of(types[i]);
+				}
+				Object value = binder.read(reader);
+				if (value != null) {
+					arguments[i] = value;
+				}
+			}
+			reader.endObject();
+
+			try {
+				return (Object) constructor.invokeExact(arguments);
+			} catch (Throwable e) {
+				throw rethrow(e);
+			}
+		}
+	}
+
+	/**
+	 * 解析类型变量后得到的参数化类型，equals和hashCode与JDK的实现一致
+	 */
+	private static final class ParameterizedTypeImpl implements
+			ParameterizedType {
+		private final Type rawType;
+		private final Type[] arguments;
+		private final Type ownerType;
+
+		ParameterizedTypeImpl(Type rawType, Type[] arguments, Type ownerType) {
+			this.rawType = rawType;
+			this.arguments = arguments;
+			this.ownerType = ownerType;
+		}
+
+		public Type[] getActualTypeArguments() {
+			return arguments.clone();
+		}
+
+		public Type getRawType() {
+			return rawType;
+		}
+
+		public Type getOwnerType() {
+			return ownerType;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof ParameterizedType)) {
+				return false;
+			}
+			ParameterizedType that = (ParameterizedType) o;
+			return Objects.equals(rawType, that.getRawType())
+					&& Objects.equals(ownerType, that.getOwnerType())
+					&& Arrays.equals(arguments, that.getActualTypeArguments());
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(arguments) ^ Objects.hashCode(ownerType)
+					^ Objects.hashCode(rawType);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(rawType.getTypeName());
+			sb.append('<');
+			for (int i = 0; i < arguments.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(arguments[i].getTypeName());
+			}
+			return sb.append('>').toString();
+		}
+	}
+}
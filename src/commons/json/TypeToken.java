@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * 携带泛型参数的类型标记，通过匿名子类保留被擦除的类型信息
+ *
+ * <pre>
+ * List&lt;Person&gt; persons = Json.deserialize(json, new TypeToken&lt;List&lt;Person&gt;&gt;() {});
+ * </pre>
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+public abstract class TypeToken<T> {
+
+	private final Type type;
+
+	protected TypeToken() {
+		Type superclass = getClass().getGenericSuperclass();
+		if (!(superclass instanceof ParameterizedType)) {
+			throw new JsonException("缺少泛型参数:" + superclass);
+		}
+		this.type = ((ParameterizedType) superclass).getActualTypeArguments()[0];
+	}
+
+	/**
+	 * 获取标记的类型
+	 *
+	 * @return
+	 */
+	public Type getType() {
+		return type;
+	}
+}
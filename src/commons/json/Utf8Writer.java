@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接以UTF-8编码输出的Writer，不经过中间的String和CharsetEncoder
+ * <p>
+ * 编码结果先写入内部缓冲区，缓冲区满或{@link #flush()}时写入OutputStream或ByteBuffer。
+ * 未配对的代理字符与String.getBytes一致，编码为'?'。非线程安全。
+ *
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+final class Utf8Writer extends Writer {
+
+	/**
+	 * 单个字符编码后的最大字节数，含之前未配对的高代理字符
+	 */
+	private static final int MAX_BYTES_PER_CHAR = 4;
+
+	/**
+	 * 输出目标，二者只有一个不为null
+	 */
+	private final OutputStream out;
+	private final ByteBuffer target;
+
+	private final byte[] buf;
+	private int count;
+
+	/**
+	 * 等待低代理字符的高代理字符，没有时为0
+	 */
+	private char highSurrogate;
+
+	/**
+	 * @param out
+	 * @param buf
+	 *            内部缓冲区，长度不小于{@link #MAX_BYTES_PER_CHAR}
+	 */
+	Utf8Writer(OutputStream out, byte[] buf) {
+		this.out = out;
+		this.target = null;
+		this.buf = buf;
+	}
+
+	/**
+	 * 写入ByteBuffer，空间不足时抛出BufferOverflowException
+	 *
+	 * @param target
+	 * @param buf
+	 *            内部缓冲区，长度不小于{@link #MAX_BYTES_PER_CHAR}
+	 */
+	Utf8Writer(ByteBuffer target, byte[] buf) {
+		this.out = null;
+		this.target = target;
+		this.buf = buf;
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		if (count > buf.length - MAX_BYTES_PER_CHAR) {
+			flushBuffer();
+		}
+		encode((char) c);
+	}
+
+	@Override
+	public Writer append(char c) throws IOException {
+		write(c);
+		return this;
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		int end = off + len;
+		while (off < end) {
+			int stop = Math.min(end, off + (buf.length - count)
+					/ MAX_BYTES_PER_CHAR);
+			if (stop == off) {
+				flushBuffer();
+				continue;
+			}
+
+			byte[] buf = this.buf;
+			int count = this.count;
+			for (; off < stop; off++) {
+				char c = cbuf[off];
+				if (c < 0x80 && highSurrogate == 0) {
+					buf[count++] = (byte) c;
+				} else {
+					this.count = count;
+					encode(c);
+					count = this.count;
+				}
+			}
+			this.count = count;
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		append(str, off, off + len);
+	}
+
+	@Override
+	public Writer append(CharSequence csq) throws IOException {
+		if (csq == null) {
+			csq = "null";
+		}
+		return append(csq, 0, csq.length());
+	}
+
+	@Override
+	public Writer append(CharSequence csq, int start, int end)
+			throws IOException {
+		if (csq == null) {
+			csq = "null";
+		}
+		while (start < end) {
+			int stop = Math.min(end, start + (buf.length - count)
+					/ MAX_BYTES_PER_CHAR);
+			if (stop == start) {
+				flushBuffer();
+				continue;
+			}
+
+			byte[] buf = this.buf;
+			int count = this.count;
+			for (; start < stop; start++) {
+				char c = csq.charAt(start);
+				if (c < 0x80 && highSurrogate == 0) {
+					buf[count++] = (byte) c;
+				} else {
+					this.count = count;
+					encode(c);
+					count = this.count;
+				}
+			}
+			this.count = count;
+		}
+		return this;
+	}
+
+	/**
+	 * 写入已编码的UTF-8字节，如预先生成的属性名片段
+	 *
+	 * @param bytes
+	 * @throws IOException
+	 */
+	void write(byte[] bytes) throws IOException {
+		endSurrogate();
+		if (bytes.length > buf.length - count) {
+			flushBuffer();
+			if (bytes.length > buf.length) {
+				writeOut(bytes, bytes.length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buf, count, bytes.length);
+		count += bytes.length;
+	}
+
+	/**
+	 * 编码单个字符，调用前缓冲区至少剩余{@link #MAX_BYTES_PER_CHAR}个字节
+	 *
+	 * @param c
+	 */
+	private void encode(char c) {
+		byte[] buf = this.buf;
+		if (highSurrogate != 0) {
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				buf[count++] = (byte) (0xf0 | (codePoint >> 18));
+				buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				buf[count++] = (byte) (0x80 | (codePoint & 0x3f));
+				return;
+			}
+			buf[count++] = '?';
+		}
+
+		if (c < 0x80) {
+			buf[count++] = (byte) c;
+		} else if (c < 0x800) {
+			buf[count++] = (byte) (0xc0 | (c >> 6));
+			buf[count++] = (byte) (0x80 | (c & 0x3f));
+		} else if (Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			buf[count++] = '?';
+		} else {
+			buf[count++] = (byte) (0xe0 | (c >> 12));
+			buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			buf[count++] = (byte) (0x80 | (c & 0x3f));
+		}
+	}
+
+	/**
+	 * 将等待中的高代理字符编码为'?'
+	 */
+	private void endSurrogate() throws IOException {
+		if (highSurrogate != 0) {
+			if (count == buf.length) {
+				flushBuffer();
+			}
+			highSurrogate = 0;
+			buf[count++] = '?';
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			writeOut(buf, count);
+			count = 0;
+		}
+	}
+
+	private void writeOut(byte[] bytes, int len) throws IOException {
+		if (out != null) {
+			out.write(bytes, 0, len);
+		} else {
+			target.put(bytes, 0, len);
+		}
+	}
+
+	/**
+	 * 写出缓冲区中的字节，末尾未配对的高代理字符编码为'?'
+	 */
+	@Override
+	public void flush() throws IOException {
+		endSurrogate();
+		flushBuffer();
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		if (out != null) {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe LRU(least recently used) Cache Provider based on
+ * ConcurrentHashMap
+ * <p>
+ * 读写直接访问ConcurrentHashMap，LRU链表的调整先记录在缓冲区中，由获得淘汰锁的线程批量完成：
+ * 读操作记入按线程分段的有损缓冲区，只尝试获取锁，从不等待；新增和移除记入写缓冲区，积压过多时才等待锁。
+ * 因此淘汰顺序是近似的，容量在写缓冲区处理完之前可能暂时超出。
+ *
+ * @author yuanyan.cao
+ *
+ * @param <K>
+ * @param <V>
+ */
+public final class ConcurrentLruCacheProvider<K, V> implements
+		CacheProvider<K, V> {
+
+	/**
+	 * 每段读缓冲区的大小，写满一轮时尝试整理
+	 */
+	private static final int READ_BUFFER_SIZE = 16;
+
+	/**
+	 * 写缓冲区积压超过该值时，写线程等待锁并整理
+	 */
+	private static final int WRITE_BUFFER_THRESHOLD = 128;
+
+	/**
+	 * 缓存最大容量
+	 */
+	private final int maxCapacity;
+
+	private final ConcurrentHashMap<K, Node<K, V>> map;
+
+	/**
+	 * 保护LRU链表的淘汰锁
+	 */
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	/**
+	 * LRU链表的哨兵，next为最久未使用的元素，prev为最近使用的元素
+	 */
+	private final Node<K, V> head = new Node<K, V>(null, null);
+
+	/**
+	 * 链表中的元素数
+	 */
+	private int linkedSize;
+
+	private final ReadBuffer[] readBuffers;
+
+	private final ConcurrentLinkedQueue<Node<K, V>> writeBuffer = new ConcurrentLinkedQueue<Node<K, V>>();
+
+	private final AtomicInteger pendingWrites = new AtomicInteger();
+
+	/**
+	 * 实例化默认最大容量为100的ConcurrentLruCacheProvider
+	 */
+	public ConcurrentLruCacheProvider() {
+		this(100);
+	}
+
+	/**
+	 * 实例化
+	 *
+	 * @param maxCapacity
+	 *            最大容量
+	 */
+	public ConcurrentLruCacheProvider(int maxCapacity) {
+		if (maxCapacity < 0) {
+			throw new IllegalArgumentException("maxCapacity: " + maxCapacity);
+		}
+		this.maxCapacity = maxCapacity;
+		this.map = new ConcurrentHashMap<K, Node<K, V>>(Math.min(maxCapacity,
+				1 << 16));
+		head.prev = head;
+		head.next = head;
+
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors()) {
+			stripes <<= 1;
+		}
+		this.readBuffers = new ReadBuffer[stripes];
+		for (int i = 0; i < stripes; i++) {
+			readBuffers[i] = new ReadBuffer();
+		}
+	}
+
+	public void add(K key, V value) {
+		if (key == null) {
+			return;
+		}
+		Node<K, V> node = new Node<K, V>(key, value);
+		Node<K, V> prior = map.putIfAbsent(key, node);
+		if (prior == null) {
+			afterWrite(node);
+		} else {
+			prior.value = value;
+			afterRead(prior);
+		}
+	}
+
+	public V get(K key) {
+		if (key == null) {
+			return null;
+		}
+		Node<K, V> node = map.get(key);
+		if (node == null) {
+			return null;
+		}
+		afterRead(node);
+		return node.value;
+	}
+
+	public V remove(K key) {
+		if (key == null) {
+			return null;
+		}
+		Node<K, V> node = map.remove(key);
+		if (node == null) {
+			return null;
+		}
+		node.removed = true;
+		afterWrite(node);
+		return node.value;
+	}
+
+	public boolean contains(K key) {
+		return key != null && map.containsKey(key);
+	}
+
+	public void clear() {
+		evictionLock.lock();
+		try {
+			drainBuffers();
+			for (Node<K, V> node = head.next; node != head; node = node.next) {
+				map.remove(node.key, node);
+				node.removed = true;
+				node.prev = null;
+			}
+			head.prev = head;
+			head.next = head;
+			linkedSize = 0;
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * 记录一次访问，缓冲区写满一轮时尝试整理
+	 */
+	private void afterRead(Node<K, V> node) {
+		ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId()
+				& (readBuffers.length - 1)];
+		int index = buffer.count.getAndIncrement() & (READ_BUFFER_SIZE - 1);
+		buffer.slots.lazySet(index, node);
+		if (index == READ_BUFFER_SIZE - 1) {
+			tryDrain();
+		}
+	}
+
+	/**
+	 * 记录一次新增或移除并整理，积压过多时等待锁
+	 */
+	private void afterWrite(Node<K, V> node) {
+		writeBuffer.add(node);
+		if (pendingWrites.incrementAndGet() > WRITE_BUFFER_THRESHOLD) {
+			evictionLock.lock();
+			try {
+				drainBuffers();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+		tryDrain();
+	}
+
+	/**
+	 * 锁空闲时整理缓冲区；持有锁的线程释放后会再次检查写缓冲区，不会遗漏其间的写入
+	 */
+	private void tryDrain() {
+		while (evictionLock.tryLock()) {
+			try {
+				drainBuffers();
+			} finally {
+				evictionLock.unlock();
+			}
+			if (writeBuffer.isEmpty()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 按缓冲区调整LRU链表并淘汰超出容量的元素，调用时持有淘汰锁
+	 */
+	private void drainBuffers() {
+		for (ReadBuffer buffer : readBuffers) {
+			int end = buffer.count.get();
+			int pending = end - buffer.drained;
+			if (pending < 0 || pending > READ_BUFFER_SIZE) {
+				// 计数溢出或未处理的记录已被覆盖
+				pending = READ_BUFFER_SIZE;
+			}
+			for (int i = end - pending; i != end; i++) {
+				@SuppressWarnings("unchecked")
+				Node<K, V> node = (Node<K, V>) buffer.slots.getAndSet(i
+						& (READ_BUFFER_SIZE - 1), null);
+				if (node != null && node.prev != null && !node.removed) {
+					unlink(node);
+					linkLast(node);
+				}
+			}
+			buffer.drained = end;
+		}
+
+		Node<K, V> node;
+		while ((node = writeBuffer.poll()) != null) {
+			pendingWrites.decrementAndGet();
+			if (node.removed) {
+				if (node.prev != null) {
+					unlink(node);
+				}
+			} else if (node.prev == null) {
+				linkLast(node);
+			}
+		}
+
+		while (linkedSize > maxCapacity) {
+			Node<K, V> eldest = head.next;
+			unlink(eldest);
+			eldest.removed = true;
+			map.remove(eldest.key, eldest);
+		}
+	}
+
+	private void linkLast(Node<K, V> node) {
+		Node<K, V> last = head.prev;
+		node.prev = last;
+		node.next = head;
+		last.next = node;
+		head.prev = node;
+		linkedSize++;
+	}
+
+	private void unlink(Node<K, V> node) {
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+		linkedSize--;
+	}
+
+	/**
+	 * 缓存项，prev和next只在持有淘汰锁时访问，prev为null表示不在链表中
+	 */
+	private static final class Node<K, V> {
+		final K key;
+		volatile V value;
+		/**
+		 * 已从map中移除
+		 */
+		volatile boolean removed;
+		Node<K, V> prev;
+		Node<K, V> next;
+
+		Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 有损的环形读缓冲区，并发写入时可能覆盖未处理的记录
+	 */
+	private static final class ReadBuffer {
+		final AtomicInteger count = new AtomicInteger();
+		/**
+		 * 已整理到的位置，只在持有淘汰锁时访问
+		 */
+		int drained;
+		final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<Object>(
+				READ_BUFFER_SIZE);
+	}
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright (C) 2010 Yuanyan Cao<yuanyan.cao@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package commons.json.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * 编解码器生成处理器
+ * <p>
+ * 为标注了{@link commons.json.annotation.JsonSerializable}的类型生成
+ * {@link commons.json.GeneratedCodec}实现，并写入
+ * <code>META-INF/services/commons.json.GeneratedCodec</code>。
+ * 生成的代码直接访问公共字段，序列化输出和类型绑定的反序列化结果与反射方式一致。
+ * 
+ * @author yuanyan.cao@gmail.com
+ * @version 1.0
+ */
+@SupportedAnnotationTypes(JsonCodecProcessor.ANNOTATION)
+public class JsonCodecProcessor extends AbstractProcessor {
+
+	static final String ANNOTATION = "commons.json.annotation.JsonSerializable";
+
+	private static final String SERVICE = "META-INF/services/commons.json.GeneratedCodec";
+
+	/**
+	 * 已生成的编解码器类名
+	 */
+	private final List<String> generated = new ArrayList<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv) {
+		TypeElement annotation = processingEnv.getElementUtils()
+				.getTypeElement(ANNOTATION);
+
+		if (annotation != null) {
+			for (Element element : roundEnv
+					.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.CLASS) {
+					error(element, "@JsonSerializable只能用于类");
+					continue;
+				}
+				try {
+					generate((TypeElement) element);
+				} catch (IOException e) {
+					error(element, "生成编解码器失败：" + e.getMessage());
+				}
+			}
+		}
+
+		if (roundEnv.processingOver() && !generated.isEmpty()) {
+			writeServiceFile();
+		}
+		return true;
+	}
+
+	/**
+	 * 生成编解码器源文件
+	 * 
+	 * @param type
+	 * @throws IOException
+	 */
+	private void generate(TypeElement type) throws IOException {
+		if (type.getModifiers().contains(Modifier.PRIVATE)) {
+			error(type, "@JsonSerializable类型不能是private");
+			return;
+		}
+		if (type.getNestingKind() != NestingKind.TOP_LEVEL
+				&& !(type.getNestingKind() == NestingKind.MEMBER && type
+						.getModifiers().contains(Modifier.STATIC))) {
+			// 内部类和局部类没有外部实例无法创建，生成的代码也无法引用局部类
+			error(type, "@JsonSerializable类型不能是内部类，请声明为static");
+			return;
+		}
+
+		String packageName = packageOf(type).getQualifiedName().toString();
+		String typeName = type.getQualifiedName().toString();
+		String codecName = codecName(type);
+		String qualifiedCodecName = packageName.length() == 0 ? codecName
+				: packageName + "." + codecName;
+		List<VariableElement> fields = publicFields(type);
+		boolean readable = hasDefaultConstructor(type)
+				&& !type.getModifiers().contains(Modifier.ABSTRACT);
+
+		Writer sourceWriter = processingEnv.getFiler().createSourceFile(
+				qualifiedCodecName, type).openWriter();
+		PrintWriter out = new PrintWriter(sourceWriter);
+		try {
+			if (packageName.length() > 0) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * " + typeName + "的编解码器，由JsonCodecProcessor生成，请勿修改");
+			out.println(" */");
+			out.println("public final class " + codecName
+					+ " implements commons.json.GeneratedCodec<" + typeName + "> {");
+			out.println();
+			out.println("\tpublic static final " + codecName + " INSTANCE = new "
+					+ codecName + "();");
+			out.println();
+			out.println("\tpublic Class<" + typeName + "> getType() {");
+			out.println("\t\treturn " + typeName + ".class;");
+			out.println("\t}");
+			out.println();
+
+			writeMethod(out, typeName, fields);
+			out.println();
+			readMethod(out, typeName, fields, readable);
+
+			out.println("}");
+		} finally {
+			out.close();
+		}
+		generated.add(qualifiedCodecName);
+	}
+
+	private void writeMethod(PrintWriter out, String typeName,
+			List<VariableElement> fields) {
+		out.println("\tpublic void write(" + typeName
+				+ " value, commons.json.JsonWriter writer,");
+		out.println("\t\t\tcommons.json.JsonSerializer serializer) throws java.io.IOException {");
+		if (fields.isEmpty()) {
+			out.println("\t\twriter.write(\"{}\");");
+		}
+		for (int i = 0; i < fields.size(); i++) {
+			VariableElement field = fields.get(i);
+			String name = field.getSimpleName().toString();
+			String fragment = (i == 0 ? "{" : ",") + "\\\"" + name + "\\\":";
+			String access = accessOf(field, fields);
+
+			out.println("\t\twriter.write(\"" + fragment + "\");");
+			switch (field.asType().getKind()) {
+			case INT:
+			case LONG:
+			case SHORT:
+			case BYTE:
+			case FLOAT:
+			case DOUBLE:
+				out.println("\t\twriter.writeNumber(" + access + ");");
+				break;
+			case BOOLEAN:
+				out.println("\t\twriter.writeBoolean(" + access + ");");
+				break;
+			case CHAR:
+				out.println("\t\twriter.writeString(String.valueOf(" + access
+						+ "));");
+				break;
+			default:
+				out.println("\t\tserializer.write(" + access + ");");
+			}
+		}
+		if (!fields.isEmpty()) {
+			out.println("\t\twriter.write('}');");
+		}
+		out.println("\t}");
+	}
+
+	private void readMethod(PrintWriter out, String typeName,
+			List<VariableElement> fields, boolean readable) {
+		if (!readable) {
+			out.println("\tpublic " + typeName
+					+ " read(commons.json.JsonReader reader) {");
+			out.println("\t\tthrow new commons.json.JsonException(\"" + typeName
+					+ "没有无参构造函数，不能反序列化\");");
+			out.println("\t}");
+			return;
+		}
+
+		// 与反射方式一致，同名字段以Class.getFields()中靠后的为准
+		Map<String, VariableElement> writable = new LinkedHashMap<String, VariableElement>();
+		for (VariableElement field : fields) {
+			if (!field.getModifiers().contains(Modifier.STATIC)
+					&& !field.getModifiers().contains(Modifier.FINAL)) {
+				String name = field.getSimpleName().toString();
+				writable.remove(name);
+				writable.put(name, field);
+			}
+		}
+
+		// 带泛型参数的字段类型以TypeToken常量传递
+		for (VariableElement field : writable.values()) {
+			TypeMirror type = field.asType();
+			if (needsTypeToken(type)) {
+				out.println("\tprivate static final commons.json.TypeToken<"
+						+ type + "> " + tokenName(field)
+						+ " = new commons.json.TypeToken<" + type + ">() {};");
+				out.println();
+			}
+		}
+
+		out.println("\t@SuppressWarnings(\"unchecked\")");
+		out.println("\tpublic " + typeName
+				+ " read(commons.json.JsonReader reader) {");
+		out.println("\t\tif (reader.peek() == commons.json.JsonToken.NULL) {");
+		out.println("\t\t\treader.nextNull();");
+		out.println("\t\t\treturn null;");
+		out.println("\t\t}");
+		out.println("\t\t" + typeName + " value = new " + typeName + "();");
+		out.println("\t\treader.beginObject();");
+		out.println("\t\twhile (reader.hasNext()) {");
+		out.println("\t\t\tswitch (reader.nextName()) {");
+		for (VariableElement field : writable.values()) {
+			out.println("\t\t\tcase \"" + field.getSimpleName() + "\":");
+			TypeMirror type = field.asType();
+			String read = readOf(field);
+			if (type.getKind().isPrimitive() || isString(type)) {
+				out.println("\t\t\t\tif (reader.peek() == commons.json.JsonToken.NULL) {");
+				out.println("\t\t\t\t\treader.nextNull();");
+				if (!type.getKind().isPrimitive()) {
+					out.println("\t\t\t\t\t" + accessOf(field, fields) + " = null;");
+				}
+				// 基本类型保留默认值
+				out.println("\t\t\t\t\tbreak;");
+				out.println("\t\t\t\t}");
+			}
+			out.println("\t\t\t\t" + accessOf(field, fields) + " = " + read
+					+ ";");
+			out.println("\t\t\t\tbreak;");
+		}
+		out.println("\t\t\tdefault:");
+		out.println("\t\t\t\treader.skipValue();");
+		out.println("\t\t\t}");
+		out.println("\t\t}");
+		out.println("\t\treader.endObject();");
+		out.println("\t\treturn value;");
+		out.println("\t}");
+	}
+
+	/**
+	 * 读取字段值的表达式，常见类型直接调用JsonReader，其余交给类型绑定
+	 * 
+	 * @param field
+	 * @return
+	 */
+	private String readOf(VariableElement field) {
+		TypeMirror type = field.asType();
+		switch (type.getKind()) {
+		case INT:
+			return "reader.nextInt()";
+		case LONG:
+			return "reader.nextLong()";
+		case DOUBLE:
+			return "reader.nextDouble()";
+		case BOOLEAN:
+			return "reader.nextBoolean()";
+		case DECLARED:
+			if (isString(type)) {
+				return "reader.nextString()";
+			}
+			TypeElement element = (TypeElement) ((DeclaredType) type)
+					.asElement();
+			if (isAnnotated(element) && !needsTypeToken(type)) {
+				return packageOf(element).getQualifiedName()
+						+ (packageOf(element).isUnnamed() ? "" : ".")
+						+ codecName(element) + ".INSTANCE.read(reader)";
+			}
+			break;
+		default:
+			break;
+		}
+
+		if (needsTypeToken(type)) {
+			return "commons.json.Json.deserialize(reader, " + tokenName(field)
+					+ ")";
+		}
+		// 生成的代码以原始类型访问字段，含类型变量的字段按擦除后的类型读取；
+		// 基本类型由Json.deserialize返回包装类型，赋值时拆箱
+		return "commons.json.Json.deserialize(reader, "
+				+ processingEnv.getTypeUtils().erasure(type) + ".class)";
+	}
+
+	/**
+	 * 类型是否带有类型实参，且不含类型变量
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static boolean needsTypeToken(TypeMirror type) {
+		if (containsTypeVariable(type)) {
+			return false;
+		}
+		while (type.getKind() == TypeKind.ARRAY) {
+			type = ((ArrayType) type).getComponentType();
+		}
+		return type.getKind() == TypeKind.DECLARED
+				&& !((DeclaredType) type).getTypeArguments().isEmpty();
+	}
+
+	private static boolean containsTypeVariable(TypeMirror type) {
+		switch (type.getKind()) {
+		case TYPEVAR:
+			return true;
+		case ARRAY:
+			return containsTypeVariable(((ArrayType) type).getComponentType());
+		case WILDCARD:
+			WildcardType wildcard = (WildcardType) type;
+			return (wildcard.getExtendsBound() != null && containsTypeVariable(wildcard
+					.getExtendsBound()))
+					|| (wildcard.getSuperBound() != null && containsTypeVariable(wildcard
+							.getSuperBound()));
+		case DECLARED:
+			for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+				if (containsTypeVariable(argument)) {
+					return true;
+				}
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isString(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED
+				&& ((TypeElement) ((DeclaredType) type).asElement())
+						.getQualifiedName().contentEquals("java.lang.String");
+	}
+
+	private static String tokenName(VariableElement field) {
+		return "TYPE_" + field.getSimpleName();
+	}
+
+	/**
+	 * 类型的公共字段，顺序与Class.getFields()一致：先是本类声明的字段，再依次是各直接超接口和超类的公共字段，
+	 * 经多条路径继承的同一字段只出现一次，被隐藏的同名字段保留
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static List<VariableElement> publicFields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<VariableElement>();
+		addPublicFields(type, fields);
+		return fields;
+	}
+
+	private static void addPublicFields(TypeElement type,
+			List<VariableElement> fields) {
+		for (VariableElement field : ElementFilter.fieldsIn(type
+				.getEnclosedElements())) {
+			if (field.getModifiers().contains(Modifier.PUBLIC)
+					&& !fields.contains(field)) {
+				fields.add(field);
+			}
+		}
+		for (TypeMirror superinterface : type.getInterfaces()) {
+			addPublicFields(
+					(TypeElement) ((DeclaredType) superinterface).asElement(),
+					fields);
+		}
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() == TypeKind.DECLARED) {
+			addPublicFields(
+					(TypeElement) ((DeclaredType) superclass).asElement(),
+					fields);
+		}
+	}
+
+	private static boolean isAnnotated(TypeElement type) {
+		for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement())
+					.getQualifiedName().contentEquals(ANNOTATION)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 字段的访问表达式，静态字段以声明类型限定；被前面同名字段隐藏的实例字段先转换为声明类型，
+	 * 以访问被隐藏的超类字段并避免与接口常量的二义性
+	 * 
+	 * @param field
+	 * @param fields
+	 * @return
+	 */
+	private static String accessOf(VariableElement field,
+			List<VariableElement> fields) {
+		TypeElement declaring = (TypeElement) field.getEnclosingElement();
+		if (field.getModifiers().contains(Modifier.STATIC)) {
+			return declaring.getQualifiedName() + "." + field.getSimpleName();
+		}
+		// 排在前面的同名字段隐藏了此字段
+		for (VariableElement other : fields) {
+			if (other == field) {
+				break;
+			}
+			if (other.getSimpleName().equals(field.getSimpleName())) {
+				return "((" + declaring.getQualifiedName() + ") value)."
+						+ field.getSimpleName();
+			}
+		}
+		return "value." + field.getSimpleName();
+	}
+
+	private static boolean hasDefaultConstructor(TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter
+				.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty()
+					&& !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 编解码器类名，嵌套类以下划线连接，如Outer_InnerJsonCodec
+	 * 
+	 * @param type
+	 * @return
+	 */
+	private static String codecName(TypeElement type) {
+		StringBuilder sb = new StringBuilder(type.getSimpleName());
+		Element enclosing = type.getEnclosingElement();
+		while (enclosing instanceof TypeElement) {
+			sb.insert(0, '_').insert(0, enclosing.getSimpleName());
+			enclosing = enclosing.getEnclosingElement();
+		}
+		return sb.append("JsonCodec").toString();
+	}
+
+	private static PackageElement packageOf(Element element) {
+		while (!(element instanceof PackageElement)) {
+			element = element.getEnclosingElement();
+		}
+		return (PackageElement) element;
+	}
+
+	private void writeServiceFile() {
+		try {
+			FileObject file = processingEnv.getFiler().createResource(
+					StandardLocation.CLASS_OUTPUT, "", SERVICE);
+			PrintWriter out = new PrintWriter(file.openWriter());
+			try {
+				for (String name : generated) {
+					out.println(name);
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"写入" + SERVICE + "失败：" + e.getMessage());
+		}
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+				message, element);
+	}
+}
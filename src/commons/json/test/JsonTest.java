@@ -1,12 +1,54 @@
 package commons.json.test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.ServiceLoader;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
 
 import commons.json.Json;
+import commons.json.JsonArray;
+import commons.json.JsonCodec;
+import commons.json.JsonException;
+import commons.json.JsonHandler;
+import commons.json.JsonLinesReader;
+import commons.json.JsonObject;
+import commons.json.JsonReader;
+import commons.json.JsonString;
+import commons.json.JsonTape;
+import commons.json.JsonToken;
+import commons.json.JsonWriter;
+import commons.json.TypeToken;
 import commons.json.JsonSerializer;
+import commons.json.cache.ConcurrentLruCacheProvider;
 import commons.json.cache.LinkedHashMapCacheProvider;
+import commons.json.processor.JsonCodecProcessor;
 
 
 import junit.framework.TestCase;
@@ -32,6 +74,860 @@ public class JsonTest extends TestCase {
 		
 		}
 
+	public void testStreamingMatchesTree() throws Exception {
+
+		Person person = new Person("cyy", 123);
+		person.lover = new Person("lover", 18);
+
+		Map map = new HashMap();
+		map.put("person", person);
+		map.put("list", new ArrayList());
+		map.put("ints", new int[] { 1, 2, 3 });
+
+		StringBuilder tree = new StringBuilder();
+		Json.toJsonTree(map).toString(tree);
+
+		assertEquals(tree.toString(), Json.serialize(map));
+	}
+
+
+	public void testCodeGeneration() {
+
+		Person person = new Person("cyy", 123);
+		person.lover = new Person("lover", 18);
+
+		String reflective = Json.serialize(person);
+
+		Json.setCodeGenerationEnabled(true);
+		try {
+			assertEquals(reflective, Json.serialize(person));
+		} finally {
+			Json.setCodeGenerationEnabled(false);
+		}
+	}
+
+	public void testDeserialize() {
+
+		Map map = (Map) Json
+				.deserialize(" {\"name\" : \"c\\\"y\\u0079\\n\", 'age':123, \"list\":[1, 2.5, true, null, {}],\"empty\":\"\"} ");
+
+		assertEquals("c\"yy\n", map.get("name"));
+		assertEquals(Long.valueOf(123), map.get("age"));
+		assertEquals("", map.get("empty"));
+
+		List list = (List) map.get("list");
+		assertEquals(5, list.size());
+		assertEquals(Double.valueOf(2.5), list.get(1));
+		assertEquals(Boolean.TRUE, list.get(2));
+		assertNull(list.get(3));
+		assertEquals(new HashMap(), list.get(4));
+	}
+
+	public void testDeserializeNumbers() throws Exception {
+		String json = "[0, -12, 1e5, -2.5E-3, 9223372036854775807, 12345678901234567890, 0.1000000000000000055511151231257827, 1e400]";
+		List expected = new ArrayList();
+		expected.add(Long.valueOf(0));
+		expected.add(Long.valueOf(-12));
+		expected.add(Double.valueOf(1e5));
+		expected.add(Double.valueOf(-2.5e-3));
+		expected.add(Long.valueOf(Long.MAX_VALUE));
+		expected.add(new BigInteger("12345678901234567890"));
+		expected.add(Double.valueOf(0.1));
+		expected.add(new BigDecimal("1e400"));
+
+		assertEquals(expected, Json.deserialize(json));
+		assertEquals(expected, Json.deserialize(json.getBytes("UTF-8")));
+		assertEquals(expected, Json.deserialize(new StringReader(json)));
+
+		assertEquals(new BigDecimal("2.5"), Json.deserialize("2.5", BigDecimal.class));
+
+		try {
+			Json.deserialize("[1.2.3]");
+			fail();
+		} catch (JsonException e) {
+		}
+	}
+
+	public void testSerializeBigNumbers() {
+		String[] jsons = { "[123456789012345678901]", "1e400", "-1e400",
+				"[12345678901234567890,-1e400,{\"big\":99999999999999999999}]" };
+		for (String json : jsons) {
+			Object value = Json.deserialize(json);
+			assertEquals(value, Json.deserialize(Json.serialize(value)));
+		}
+		assertEquals("1E+400", Json.serialize(new BigDecimal("1e400")));
+
+		BigHolder holder = new BigHolder();
+		holder.integer = new BigInteger("123456789012345678901");
+		holder.decimal = new BigDecimal("-1e400");
+		assertEquals(
+				"{\"integer\":123456789012345678901,\"decimal\":-1E+400}",
+				Json.serialize(holder));
+	}
+
+	public void testDeserializeReader() {
+
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 5000; i++) {
+			sb.append("{\"id\":").append(i).append(",\"text\":\"line\nbreak\"},\n");
+		}
+		sb.append("null]");
+
+		List list = (List) Json.deserialize(new StringReader(sb.toString()));
+
+		assertEquals(5001, list.size());
+		assertEquals(Long.valueOf(4999), ((Map) list.get(4999)).get("id"));
+		assertEquals("line\nbreak", ((Map) list.get(4999)).get("text"));
+		assertEquals(Json.deserialize(sb.toString()), list);
+	}
+
+	public void testJsonReader() {
+
+		JsonReader reader = new JsonReader(
+				"{\"id\": 12, \"skip\": [1, {\"a\": \"b\\\"\"}], \"name\": \"cyy\", \"score\": 2.5}");
+
+		long id = 0;
+		String name = null;
+		double score = 0;
+
+		assertEquals(JsonToken.BEGIN_OBJECT, reader.nextToken());
+		while (reader.hasNext()) {
+			String property = reader.nextName();
+			if ("id".equals(property)) {
+				id = reader.nextLong();
+			} else if ("name".equals(property)) {
+				name = reader.nextString();
+			} else if ("score".equals(property)) {
+				score = reader.nextDouble();
+			} else {
+				reader.skipValue();
+			}
+		}
+		assertEquals(JsonToken.END_OBJECT, reader.nextToken());
+		assertEquals(JsonToken.END_DOCUMENT, reader.nextToken());
+
+		assertEquals(12, id);
+		assertEquals("cyy", name);
+		assertEquals(2.5, score, 0);
+	}
+
+	public void testJsonReaderSkipValidates() {
+		String[] invalid = { "-", "1e", "--1", "\"\\u12\"", "\"\\u12zz\"",
+				"[1,\"\\uXYZW\"]", "{\"a\":1e+}" };
+		for (String value : invalid) {
+			JsonReader reader = new JsonReader("[" + value + "]");
+			reader.beginArray();
+			try {
+				reader.skipValue();
+				fail(value);
+			} catch (JsonException e) {
+			}
+		}
+
+		JsonReader reader = new JsonReader(
+				"[-1.5e3,\"\\u00e9\\n\",12345678901234567890123,{\"\\u0041\":[0]}]");
+		reader.beginArray();
+		while (reader.hasNext()) {
+			reader.skipValue();
+		}
+		reader.endArray();
+	}
+
+	public void testDeserializeBytes() throws Exception {
+		String json = "{\"name\":\"曹\\u00e9\",\"list\":[1,2.5,true,null]}";
+		Object expected = Json.deserialize(json);
+
+		byte[] utf8 = json.getBytes("UTF-8");
+		assertEquals(expected, Json.deserialize(utf8));
+		assertEquals(expected, Json.deserialize(new ByteArrayInputStream(utf8)));
+		assertEquals(expected, Json.deserialize(ByteBuffer
+				.allocateDirect(utf8.length).put(utf8).flip()));
+
+		byte[] bom = new byte[utf8.length + 3];
+		bom[0] = (byte) 0xEF;
+		bom[1] = (byte) 0xBB;
+		bom[2] = (byte) 0xBF;
+		System.arraycopy(utf8, 0, bom, 3, utf8.length);
+		assertEquals(expected, Json.deserialize(bom));
+
+		assertEquals(expected, Json.deserialize(json.getBytes("UTF-16LE")));
+		assertEquals(expected, Json.deserialize(new ByteArrayInputStream(json
+				.getBytes("UTF-16"))));
+	}
+
+	public void testVectorByteScanner() throws Exception {
+		Object vector;
+		try {
+			Constructor<?> constructor = Class.forName(
+					"commons.json.VectorByteScanner").getDeclaredConstructor();
+			constructor.setAccessible(true);
+			vector = constructor.newInstance();
+		} catch (ClassNotFoundException e) {
+			// 未编译src-vector
+			return;
+		} catch (LinkageError e) {
+			// 未以--add-modules jdk.incubator.vector运行
+			return;
+		}
+		Class<?> scannerType = vector.getClass().getSuperclass();
+		Constructor<?> constructor = scannerType.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		Object scalar = constructor.newInstance();
+
+		Method skipWhiteSpace = scannerType.getDeclaredMethod("skipWhiteSpace",
+				byte[].class, int.class, int.class);
+		Method scanAscii = scannerType.getDeclaredMethod("scanAscii",
+				byte[].class, int.class, int.class, byte.class);
+		Method scanString = scannerType.getDeclaredMethod("scanString",
+				byte[].class, int.class, int.class, byte.class);
+		skipWhiteSpace.setAccessible(true);
+		scanAscii.setAccessible(true);
+		scanString.setAccessible(true);
+
+		byte[] alphabet = " \t\r\na\"'\\".getBytes("UTF-8");
+		Random random = new Random(17);
+		for (int n = 0; n < 2000; n++) {
+			byte[] buf = new byte[random.nextInt(300)];
+			boolean multibyte = random.nextInt(4) > 0;
+			for (int i = 0; i < buf.length; i++) {
+				// 以长短不一的连续空白或普通字符为主，偶尔插入引号、反斜杠和多字节字符
+				if (multibyte && random.nextInt(40) == 0) {
+					buf[i] = (byte) (0x80 | random.nextInt(0x40));
+				} else if (random.nextInt(8) == 0) {
+					buf[i] = alphabet[random.nextInt(alphabet.length)];
+				} else {
+					buf[i] = i % 97 < 60 ? (byte) ' ' : (byte) 'x';
+				}
+			}
+			int pos = buf.length == 0 ? 0 : random.nextInt(buf.length);
+			int limit = pos + random.nextInt(buf.length - pos + 1);
+			byte quote = random.nextBoolean() ? (byte) '"' : (byte) '\'';
+
+			assertEquals(skipWhiteSpace.invoke(scalar, buf, pos, limit),
+					skipWhiteSpace.invoke(vector, buf, pos, limit));
+			assertEquals(scanAscii.invoke(scalar, buf, pos, limit, quote),
+					scanAscii.invoke(vector, buf, pos, limit, quote));
+			assertEquals(scanString.invoke(scalar, buf, pos, limit, quote),
+					scanString.invoke(vector, buf, pos, limit, quote));
+		}
+	}
+
+	public void testDeserializePath() throws Exception {
+		String json = "[{\"id\":1,\"name\":\"曹\"},{\"id\":2,\"name\":\"cyy\"}]";
+
+		Path path = Files.createTempFile("commons-json", ".json");
+		try {
+			Files.write(path, json.getBytes("UTF-8"));
+			assertEquals(Json.deserialize(json), Json.deserialize(path));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	public void testJsonLines() {
+		String lines = "{\"id\":1}\n\n{\"id\":2}\r\n[3]\n\"four\"";
+
+		List records = new JsonLinesReader().readAll(new ByteArrayInputStream(
+				lines.getBytes()));
+
+		assertEquals(4, records.size());
+		assertEquals(Json.deserialize("{\"id\":1}"), records.get(0));
+		assertEquals(Json.deserialize("{\"id\":2}"), records.get(1));
+		assertEquals(Json.deserialize("[3]"), records.get(2));
+		assertEquals("four", records.get(3));
+	}
+
+	public void testDeserializeParallel() throws Exception {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 50000; i++) {
+			sb.append("{\"id\":").append(i)
+					.append(",\"name\":\"a,]\\\"b\",\"tags\":[1,{}]},");
+		}
+		sb.append("\"end\"]");
+		String json = sb.toString();
+
+		Object expected = Json.deserialize(json);
+		assertEquals(expected, Json.deserializeParallel(json));
+		assertEquals(expected, Json.deserializeParallel(json.getBytes("UTF-8")));
+
+		try {
+			Json.deserializeParallel(json.replace("\"end\"", "end"));
+			fail();
+		} catch (JsonException e) {
+		}
+	}
+
+	public void testDeserializeType() {
+		Person person = new Person("cyy", 123);
+		person.lover = new Person("lover", 18);
+		person.myColor = COLOR.GREEN;
+
+		Person copy = Json.deserialize(Json.serialize(person), Person.class);
+		assertEquals("cyy", copy.name);
+		assertEquals(123, copy.age);
+		assertEquals(COLOR.GREEN, copy.myColor);
+		assertEquals("lover", copy.lover.name);
+		assertNull(copy.lover.lover);
+
+		List<Person> persons = Json.deserialize(
+				"[{\"name\":\"a\",\"age\":1,\"unknown\":[1,{}]},null]",
+				new TypeToken<List<Person>>() {
+				});
+		assertEquals(2, persons.size());
+		assertEquals(1, persons.get(0).age);
+		assertNull(persons.get(1));
+
+		int[] array = Json.deserialize("[1,2,3]", int[].class);
+		assertEquals(3, array[2]);
+	}
+
+	public void testDeserializeNarrowNumbers() {
+		Narrow narrow = Json.deserialize("{\"s\":-32768,\"b\":127}",
+				Narrow.class);
+		assertEquals(Short.MIN_VALUE, narrow.s);
+		assertEquals(Byte.MAX_VALUE, narrow.b);
+		assertEquals(Short.valueOf((short) 5),
+				Json.deserialize("5", Short.class));
+
+		String[] overflows = { "{\"s\":70000}", "{\"s\":32768}",
+				"{\"b\":128}", "{\"b\":-129}" };
+		for (String json : overflows) {
+			try {
+				Json.deserialize(json, Narrow.class);
+				fail(json);
+			} catch (JsonException e) {
+			}
+		}
+		try {
+			Json.deserialize("[1,300]", byte[].class);
+			fail();
+		} catch (JsonException e) {
+		}
+
+		assertEquals(Long.valueOf(Long.MIN_VALUE),
+				Json.deserialize("-9223372036854775808.0", long.class));
+		assertEquals(Long.valueOf(1000000000000000000L),
+				Json.deserialize("1e18", long.class));
+		// 2^63及以上的浮点数不会被截断为Long.MAX_VALUE
+		String[] longOverflows = { "9223372036854775808",
+				"9223372036854775807.0", "1e19", "-9.3e18" };
+		for (String json : longOverflows) {
+			try {
+				Json.deserialize(json, long.class);
+				fail(json);
+			} catch (JsonException e) {
+			}
+			JsonTape tape = Json.deserializeTape("[" + json + "]");
+			try {
+				tape.getLong(tape.get(tape.root(), 0));
+				fail(json);
+			} catch (JsonException e) {
+			}
+		}
+	}
+
+	public void testDeserializeLazy() throws Exception {
+		JsonObject object = (JsonObject) Json
+				.deserializeLazy("{\"id\":7,\"skip\":{\"a\":[1,\"]}\\\"\",{}]},\"tags\":[\"x\",{\"y\":true}]}");
+
+		assertEquals(7, object.getAsJsonNumber("id").getAsInt());
+		JsonArray tags = object.getAsJsonArray("tags");
+		assertEquals(2, tags.size());
+		assertEquals("x", ((JsonString) tags.get(0)).getAsString());
+		assertTrue(((JsonObject) tags.get(1)).getAsJsonBoolean("y")
+				.getAsBoolean());
+
+		StringBuilder sb = new StringBuilder();
+		object.getAsJsonObject("skip").toString(sb);
+		assertEquals("{\"a\":[1,\"]}\\\"\",{}]}", sb.toString());
+	}
+
+	public void testDeserializeTape() {
+		String json = "{\"id\":7,\"skip\":{\"a\":[1,\"]}\"]},\"name\":\"c\\\"y\",\"tags\":[\"x\",2.5,true,null,[]]}";
+		JsonTape tape = Json.deserializeTape(json);
+
+		int root = tape.root();
+		assertEquals(JsonToken.BEGIN_OBJECT, tape.getType(root));
+		assertEquals(4, tape.size(root));
+		assertEquals(7, tape.getLong(tape.get(root, "id")));
+		assertEquals("c\"y", tape.getString(tape.get(root, "name")));
+		assertEquals(-1, tape.get(root, "missing"));
+
+		int tags = tape.get(root, "tags");
+		assertEquals(5, tape.size(tags));
+		assertEquals("x", tape.getString(tape.get(tags, 0)));
+		assertEquals(2.5, tape.getDouble(tape.get(tags, 1)), 0);
+		assertTrue(tape.getBoolean(tape.get(tags, 2)));
+		assertTrue(tape.isNull(tape.get(tags, 3)));
+		assertEquals(0, tape.size(tape.get(tags, 4)));
+		assertEquals(-1, tape.get(tags, 5));
+
+		int count = 0;
+		for (int i = tape.first(tags); i != tape.end(tags); i = tape.next(i)) {
+			count++;
+		}
+		assertEquals(5, count);
+
+		assertEquals(Json.deserialize(json), tape.getValue(root));
+
+		try {
+			Json.deserializeTape("{\"a\":[1,2}");
+			fail();
+		} catch (JsonException e) {
+		}
+	}
+
+	public void testJsonHandler() {
+		final StringBuilder events = new StringBuilder();
+
+		class Events implements JsonHandler {
+			public void startObject() {
+				events.append('{');
+			}
+
+			public void key(String name) {
+				events.append(name).append(':');
+			}
+
+			public void endObject() {
+				events.append('}');
+			}
+
+			public void startArray() {
+				events.append('[');
+			}
+
+			public void endArray() {
+				events.append(']');
+			}
+
+			public void value(String value) {
+				events.append("S").append(value).append(' ');
+			}
+
+			public void value(long value) {
+				events.append("L").append(value).append(' ');
+			}
+
+			public void value(double value) {
+				events.append("D").append(value).append(' ');
+			}
+
+			public void value(boolean value) {
+				events.append("B").append(value).append(' ');
+			}
+
+			public void nullValue() {
+				events.append("N ");
+			}
+		}
+
+		Json.parse("{\"a\":[1,2.5,\"s\",true,null],\"b\":{}}", new Events());
+		assertEquals("{a:[L1 D2.5 Ss Btrue N ]b:{}}", events.toString());
+
+		// 超出long范围的整数默认不会被静默转换为double
+		String big = "[12345678901234567890123,1e400]";
+		try {
+			Json.parse(big, new Events());
+			fail();
+		} catch (JsonException e) {
+		}
+
+		events.setLength(0);
+		Json.parse(big, new Events() {
+			public void value(Number value) {
+				events.append("N").append(value).append(' ');
+			}
+		});
+		assertEquals("[N12345678901234567890123 N1E+400 ]", events.toString());
+	}
+
+	public void testSerializeNumbers() throws Exception {
+		assertEquals("[1.0E23,0.1,-0.0,100.0,1.0E-5,4.9E-324]", Json
+				.serialize(new double[] { 1e23, 0.1, -0.0, 100, 1e-5,
+						Double.MIN_VALUE }));
+		assertEquals("[0.1,3.4028235E38]", Json.serialize(new float[] { 0.1f,
+				Float.MAX_VALUE }));
+		assertEquals("[-9223372036854775808,0,42]", Json.serialize(new long[] {
+				Long.MIN_VALUE, 0, 42 }));
+
+		List list = new ArrayList();
+		list.add(Double.valueOf(2.5e-3));
+		list.add(Integer.valueOf(-7));
+		StringBuilder tree = new StringBuilder();
+		Json.toJsonTree(list).toString(tree);
+		assertEquals("[0.0025,-7]", tree.toString());
+		assertEquals(tree.toString(), Json.serialize(list));
+	}
+
+	public void testSerializeEscapes() throws Exception {
+		String plain = "plain text / with slash";
+		assertEquals("\"" + plain + "\"", Json.serialize(plain));
+		assertEquals("\"a\\\"b\\\\c\\n\\t\\u0001\\u007f\\u0085\\u2028\u00e9\"",
+				Json.serialize("a\"b\\c\n\t\u0001\u007f\u0085\u2028\u00e9"));
+
+		StringBuilder tree = new StringBuilder();
+		Json.toJsonTree("<a href='x'>\r").toString(tree);
+		assertEquals("\"<a href='x'>\\r\"", tree.toString());
+	}
+
+	public void testDeserializeSharesNames() throws Exception {
+		String json = "[{\"id\":1,\"na\\u006de\":\"a\"},{\"id\":2,\"name\":\"b\"}]";
+		List list = (List) Json.deserialize(json);
+		Object first = keyOf((Map) list.get(0), "id");
+		assertSame(first, keyOf((Map) list.get(1), "id"));
+		assertSame(first, keyOf((Map) Json.deserialize("{\"id\":3}"
+				.getBytes("UTF-8")), "id"));
+		assertEquals("a", ((Map) list.get(0)).get("name"));
+		assertEquals("b", ((Map) list.get(1)).get("name"));
+	}
+
+	private static Object keyOf(Map map, String name) {
+		for (Object key : map.keySet()) {
+			if (key.equals(name)) {
+				return key;
+			}
+		}
+		return null;
+	}
+
+	public void testSerializeEscapesNames() throws Exception {
+		Map map = new LinkedHashMap();
+		map.put("a\"b", Long.valueOf(1));
+		map.put("line\n", "x");
+		String expected = "{\"a\\\"b\":1,\"line\\n\":\"x\"}";
+		assertEquals(expected, Json.serialize(map));
+
+		StringBuilder tree = new StringBuilder();
+		Json.toJsonTree(map).toString(tree);
+		assertEquals(expected, tree.toString());
+		assertEquals(map, Json.deserialize(expected));
+	}
+
+	public void testSerializeUtf8() throws Exception {
+		Map map = new LinkedHashMap();
+		map.put("名字", "中文\ud83d\ude00\"");
+		map.put("list", Json.deserialize("[1,2.5,null,true]"));
+		String json = Json.serialize(map);
+		byte[] expected = json.getBytes("UTF-8");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Json.serialize(out, map);
+		assertTrue(Arrays.equals(expected, out.toByteArray()));
+
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		Json.serialize(buffer, map);
+		assertEquals(expected.length, buffer.position());
+		buffer.flip();
+		assertEquals(map, Json.deserialize(buffer));
+
+		out.reset();
+		Json.serialize(Channels.newChannel(out), map);
+		assertEquals(json, out.toString("UTF-8"));
+	}
+
+	public void testSerializeNested() throws Exception {
+		Json.registerCodec(Label.class, new JsonCodec<Label>() {
+			public void write(Label value, JsonWriter writer,
+					JsonSerializer serializer) throws IOException {
+				// 在编解码器中再次序列化，不能与外层共用缓冲区
+				writer.writeString(Json.serialize(value.text));
+			}
+		});
+
+		List list = new ArrayList();
+		list.add(new Label("a"));
+		list.add(new Label("b"));
+		String expected = "[\"\\\"a\\\"\",\"\\\"b\\\"\"]";
+		assertEquals(expected, Json.serialize(list));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Json.serialize(out, list);
+		assertEquals(expected, out.toString("UTF-8"));
+
+		char[] chars = new char[100000];
+		Arrays.fill(chars, 'x');
+		assertEquals(100002, Json.serialize(new String(chars)).length());
+		assertEquals("\"y\"", Json.serialize("y"));
+	}
+
+	public void testConcurrentLruCacheProvider() throws Exception {
+		final ConcurrentLruCacheProvider<String, Integer> cache = new ConcurrentLruCacheProvider<String, Integer>(
+				3);
+		cache.add("a", 1);
+		cache.add("b", 2);
+		cache.add("c", 3);
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		cache.add("d", 4);
+
+		assertEquals(3, cache.size());
+		assertFalse(cache.contains("b"));
+		assertTrue(cache.contains("a"));
+		assertEquals(Integer.valueOf(3), cache.remove("c"));
+		assertNull(cache.get(null));
+
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						String key = String.valueOf((i * 31 + seed) % 50);
+						if (cache.get(key) == null) {
+							cache.add(key, i);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(cache.size() <= 3);
+	}
+
+	public void testRegisterCodec() throws Exception {
+
+		Json.registerCodec(Point.class, new JsonCodec<Point>() {
+			public void write(Point value, JsonWriter writer,
+					JsonSerializer serializer) throws IOException {
+				writer.write('[');
+				writer.writeNumber(value.x);
+				writer.write(',');
+				writer.writeNumber(value.y);
+				writer.write(']');
+			}
+		});
+
+		Map map = new HashMap();
+		map.put("p", new Point(1, 2));
+
+		assertEquals("{\"p\":[1,2]}", Json.serialize(map));
+
+		StringBuilder tree = new StringBuilder();
+		Json.toJsonTree(map).toString(tree);
+		assertEquals("{\"p\":[1,2]}", tree.toString());
+	}
+
+	public void testGeneratedCodecDeserialize() throws Exception {
+		ClassLoader loader = compileCodecs(
+				"gen.Team",
+				"package gen;\n"
+						+ "@commons.json.annotation.JsonSerializable\n"
+						+ "public class Team {\n"
+						+ "	static String createdBy;\n"
+						+ "	public String name;\n"
+						+ "	public int size = 7;\n"
+						+ "	public short rank;\n"
+						+ "	public double score;\n"
+						+ "	public boolean active;\n"
+						+ "	public char grade;\n"
+						+ "	public Member leader;\n"
+						+ "	public java.util.List<Member> members;\n"
+						+ "	public java.util.Map<String, Integer> counts;\n"
+						+ "	public String[] tags;\n"
+						+ "	public Team() {\n"
+						+ "		createdBy = new Throwable().getStackTrace()[1].getClassName();\n"
+						+ "	}\n" + "}\n",
+				"gen.Member",
+				"package gen;\n"
+						+ "@commons.json.annotation.JsonSerializable\n"
+						+ "public class Member {\n"
+						+ "	public String name;\n"
+						+ "	public long id;\n" + "}\n");
+
+		String json = "{\"name\":\"core\",\"size\":null,\"rank\":3,\"score\":1.5,"
+				+ "\"active\":true,\"grade\":\"A\",\"unknown\":[1,{\"a\":null}],"
+				+ "\"leader\":{\"name\":\"x\",\"id\":9},"
+				+ "\"members\":[{\"name\":\"y\",\"id\":10},null],"
+				+ "\"counts\":{\"a\":1},\"tags\":[\"t\"]}";
+
+		Thread thread = Thread.currentThread();
+		ClassLoader contextLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(loader);
+		try {
+			Class<?> isolated = loader.loadClass("commons.json.Json");
+			Class<?> team = loader.loadClass("gen.Team");
+			Object generated = isolated.getMethod("deserialize", String.class,
+					Class.class).invoke(null, json, team);
+
+			java.lang.reflect.Field createdBy = team
+					.getDeclaredField("createdBy");
+			createdBy.setAccessible(true);
+			assertEquals("gen.TeamJsonCodec", createdBy.get(null));
+			assertEquals("core", team.getField("name").get(generated));
+			assertEquals(7, team.getField("size").get(generated));
+			assertEquals((short) 3, team.getField("rank").get(generated));
+			assertEquals('A', team.getField("grade").get(generated));
+
+			// 与反射方式的类型绑定结果一致
+			Object reflected = Json.deserialize(json, team);
+			assertEquals(Json.serialize(reflected), isolated.getMethod(
+					"serialize", Object.class).invoke(null, generated));
+		} finally {
+			thread.setContextClassLoader(contextLoader);
+		}
+	}
+
+	public void testGeneratedCodecMatchesReflection() throws Exception {
+		ClassLoader loader = compileCodecs(
+				"gen.Constants",
+				"package gen;\n"
+						+ "public interface Constants {\n"
+						+ "	int CONST = 9;\n" + "}\n",
+				"gen.Named",
+				"package gen;\n"
+						+ "public interface Named extends Constants {\n"
+						+ "	String NAME = \"named\";\n" + "}\n",
+				"gen.Base",
+				"package gen;\n"
+						+ "public class Base implements Constants {\n"
+						+ "	public int age = 1;\n"
+						+ "	public String tag = \"base\";\n" + "}\n",
+				"gen.Kid",
+				"package gen;\n"
+						+ "@commons.json.annotation.JsonSerializable\n"
+						+ "public class Kid extends Base implements Named {\n"
+						+ "	public int age = 3;\n"
+						+ "	public String[] toys = { \"ball\" };\n" + "}\n");
+
+		Thread thread = Thread.currentThread();
+		ClassLoader contextLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(loader);
+		try {
+			Class<?> kid = loader.loadClass("gen.Kid");
+			Object codec = null;
+			for (Object candidate : ServiceLoader.load(
+					loader.loadClass("commons.json.GeneratedCodec"), loader)) {
+				if (candidate.getClass().getMethod("getType").invoke(candidate) == kid) {
+					codec = candidate;
+				}
+			}
+			assertNotNull(codec);
+
+			// 本测试的Json不知道生成的编解码器，按反射方式序列化
+			Object value = kid.getConstructor().newInstance();
+			Method serialize = loader.loadClass("commons.json.Json")
+					.getMethod("serialize", Object.class);
+			String reflected = Json.serialize(value);
+			assertTrue(reflected, reflected.contains("\"CONST\":9"));
+			assertEquals(reflected, serialize.invoke(null, value));
+
+			String json = "{\"age\":5,\"tag\":\"t\",\"toys\":[]}";
+			Object generated = loader.loadClass("commons.json.Json")
+					.getMethod("deserialize", String.class, Class.class)
+					.invoke(null, json, kid);
+			assertEquals(Json.serialize(Json.deserialize(json, kid)),
+					serialize.invoke(null, generated));
+		} finally {
+			thread.setContextClassLoader(contextLoader);
+		}
+	}
+
+	public void testGeneratedCodecRejectsInnerClass() throws Exception {
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		assertFalse(compile(Files.createTempDirectory("codec"), diagnostics,
+				"gen.Outer", "package gen;\n" + "public class Outer {\n"
+						+ "	@commons.json.annotation.JsonSerializable\n"
+						+ "	public class Inner {\n" + "		public int x;\n"
+						+ "	}\n" + "}\n"));
+
+		List<Diagnostic<? extends JavaFileObject>> errors = diagnostics
+				.getDiagnostics();
+		assertEquals(1, errors.size());
+		Diagnostic<? extends JavaFileObject> error = errors.get(0);
+		assertEquals(Diagnostic.Kind.ERROR, error.getKind());
+		assertTrue(error.getSource().toUri().toString()
+				.endsWith("gen/Outer.java"));
+		assertTrue(error.getMessage(null).contains("内部类"));
+	}
+
+	/**
+	 * 以JsonCodecProcessor编译源码，返回独立加载本库和生成类的ClassLoader，
+	 * 其中的CodecRegistry通过上下文ClassLoader发现生成的编解码器
+	 * 
+	 * @param sources
+	 *            依次为类名和源码
+	 * @return
+	 */
+	private static ClassLoader compileCodecs(String... sources)
+			throws Exception {
+		String classPath = System.getProperty("java.class.path");
+		Path output = Files.createTempDirectory("codec");
+		assertTrue(compile(output, null, sources));
+
+		List<URL> urls = new ArrayList<URL>();
+		urls.add(output.toUri().toURL());
+		for (String entry : classPath.split(File.pathSeparator)) {
+			urls.add(new File(entry).toURI().toURL());
+		}
+		return new URLClassLoader(urls.toArray(new URL[0]),
+				ClassLoader.getPlatformClassLoader());
+	}
+
+	/**
+	 * 以JsonCodecProcessor编译源码到output
+	 * 
+	 * @param output
+	 * @param diagnostics
+	 *            为null时输出到标准错误
+	 * @param sources
+	 *            依次为类名和源码
+	 * @return 是否编译成功
+	 */
+	private static boolean compile(Path output,
+			DiagnosticCollector<JavaFileObject> diagnostics, String... sources) {
+		List<JavaFileObject> units = new ArrayList<JavaFileObject>();
+		for (int i = 0; i < sources.length; i += 2) {
+			final String source = sources[i + 1];
+			units.add(new SimpleJavaFileObject(URI.create("string:///"
+					+ sources[i].replace('.', '/') + ".java"),
+					JavaFileObject.Kind.SOURCE) {
+				@Override
+				public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+					return source;
+				}
+			});
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null,
+				diagnostics, Arrays.asList("-d", output.toString(),
+						"-classpath", System.getProperty("java.class.path")),
+				null, units);
+		task.setProcessors(Arrays.asList(new JsonCodecProcessor()));
+		return task.call();
+	}
+
+}
+
+class Point {
+	public int x;
+	public int y;
+
+	Point(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+}
+
+class BigHolder {
+	public BigInteger integer;
+	public BigDecimal decimal;
+}
+
+class Narrow {
+	public short s;
+	public byte b;
+}
+
+class Label {
+	public String text;
+
+	Label(String text) {
+		this.text = text;
+	}
 }
 
 enum COLOR {
@@ -44,6 +940,9 @@ class Person {
 	public Person lover;
 	public COLOR myColor = COLOR.RED;
 
+	Person() {
+	}
+
 	Person(String name, int age) {
 		this.name = name;
 		this.age = age;